@@ -5,8 +5,12 @@ import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import me.dags.config.Config;
 import me.dags.copy.block.Mappers;
+import me.dags.copy.brush.HistoryAccountant;
+import me.dags.copy.brush.HistoryStore;
 import me.dags.copy.brush.clipboard.ClipboardBrush;
+import me.dags.copy.brush.clipboard.ClipboardCache;
 import me.dags.copy.brush.cloud.CloudBrush;
 import me.dags.copy.brush.line.LineBrush;
 import me.dags.copy.brush.replace.ReplaceBrush;
@@ -44,7 +48,7 @@ public class CopyPasta {
 
     private final Path configDir;
     private final EventListener eventListener = new EventListener();
-    private final OperationManager operationManager = new OperationManager(48000, 16000);
+    private final OperationManager operationManager = new OperationManager();
 
     private SpongeExecutorService asyncExecutor;
 
@@ -68,9 +72,12 @@ public class CopyPasta {
 
     @Listener
     public void init(GameInitializationEvent event) {
+        // blocks (including modded ones) are all registered during pre-init, so the state index & built-in mappers
+        // are built from here, in the background while the rest of startup carries on
+        Mappers.init(configDir.resolve("mappers.bin"));
+        HistoryStore.getInstance().clean();
         reload(null);
         BrushElements.getCommandBus(this).registerPackage(false, BrushCommands.class).submit();
-        Mappers.init();
         SchematicRegistry.getInstance();
     }
 
@@ -84,6 +91,15 @@ public class CopyPasta {
         stop(null);
         Sponge.getEventManager().unregisterListeners(eventListener);
         Sponge.getEventManager().registerListeners(this, eventListener);
+
+        Config config = Config.must(configDir.resolve("config.conf"));
+        operationManager.configure(config.node("operations"));
+        HistoryStore.getInstance().configure(config.node("history"));
+        HistoryAccountant.getInstance().configure(config.node("history"));
+        ClipboardCache.getInstance().configure(config.node("clipboard"));
+        SchematicRegistry.getInstance().configure(config.node("schematics"));
+        config.save();
+
         Task.builder().execute(operationManager).intervalTicks(1).submit(this);
     }
 
@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
+import me.dags.copy.brush.HistoryAccountant;
 import me.dags.copy.util.Utils;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.Sponge;
@@ -55,6 +56,7 @@ public class PlayerManager {
         if (playerData != null) {
             playerData.save();
         }
+        HistoryAccountant.getInstance().release(uuid);
     }
 
     public void handle(Player player, Throwable t) {
@@ -1,13 +1,8 @@
 package me.dags.copy.block;
 
 import com.flowpowered.math.vector.Vector3i;
-import java.util.function.Function;
 import java.util.function.Predicate;
 import org.spongepowered.api.block.BlockState;
-import org.spongepowered.api.block.BlockTypes;
-import org.spongepowered.api.data.property.AbstractProperty;
-import org.spongepowered.api.data.property.block.HardnessProperty;
-import org.spongepowered.api.data.property.block.PassableProperty;
 import org.spongepowered.api.world.World;
 
 /**
@@ -15,12 +10,8 @@ import org.spongepowered.api.world.World;
  */
 public class BlockUtils {
 
-    private static final Function<PassableProperty, Boolean> PASSABLE = AbstractProperty::getValue;
-    private static final Function<HardnessProperty, Boolean> SOFT = h -> h.getValue() != null && h.getValue() < 0.5D;
-    private static final Predicate<BlockState> AIR = b ->
-            b.getType() == BlockTypes.AIR
-            || b.getProperty(PassableProperty.class).map(PASSABLE).orElse(false)
-                    || b.getProperty(HardnessProperty.class).map(SOFT).orElse(false);
+    private static final int NON_SOLID = StateIndex.AIR | StateIndex.PASSABLE | StateIndex.SOFT;
+    private static final Predicate<BlockState> AIR = b -> StateIndex.getInstance().is(b, NON_SOLID);
 
     public static Vector3i findSolidFoundation(World world, Vector3i pos) {
         return new Vector3i(pos.getX(), findSurfaceY(world, pos), pos.getZ());
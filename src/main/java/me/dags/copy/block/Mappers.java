@@ -1,46 +1,102 @@
 package me.dags.copy.block;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import me.dags.copy.block.property.Axis;
+import me.dags.copy.block.state.MapperTables;
 import me.dags.copy.block.state.State;
 
 /**
+ * The built-in rotation & flip mappers. These are built in the background, concurrently, from init so that they
+ * overlap with the rest of server startup. Each getter waits for its mapper on first use.
+ *
  * @author dags <dags@dags.me>
  */
 public class Mappers {
 
-    private static final State.Mapper ROT90 = State.rotate(Axis.y, 90);
-    private static final State.Mapper ROT180 = State.rotate(Axis.y, 180);
-    private static final State.Mapper ROT270 = State.rotate(Axis.y, 270);
-    private static final State.Mapper FLIPX = State.flip(Axis.x);
-    private static final State.Mapper FLIPY = State.flip(Axis.y);
-    private static final State.Mapper FLIPZ = State.flip(Axis.z);
+    private static final CompletableFuture<State.Mapper> EMPTY = CompletableFuture.completedFuture(State.emptyMapper());
 
-    public static void init() {
-        // instantiates mappers
+    private static CompletableFuture<State.Mapper> ROT90 = EMPTY;
+    private static CompletableFuture<State.Mapper> ROT180 = EMPTY;
+    private static CompletableFuture<State.Mapper> ROT270 = EMPTY;
+    private static CompletableFuture<State.Mapper> FLIPX = EMPTY;
+    private static CompletableFuture<State.Mapper> FLIPY = EMPTY;
+    private static CompletableFuture<State.Mapper> FLIPZ = EMPTY;
+
+    // loads the mappers from the file if it was written against the current block registry, otherwise compiles
+    // them & (re)writes the file once they're all done
+    public static void init(Path file) {
+        CompletableFuture<StateIndex> index = CompletableFuture.supplyAsync(StateIndex::getInstance);
+        CompletableFuture<Map<String, State.Mapper>> tables = index.thenApply(i -> MapperTables.load(file, i));
+        AtomicBoolean compiled = new AtomicBoolean(false);
+
+        ROT90 = get(tables, "rot90", compiled, () -> State.rotate(Axis.y, 90));
+        ROT180 = get(tables, "rot180", compiled, () -> State.rotate(Axis.y, 180));
+        ROT270 = get(tables, "rot270", compiled, () -> State.rotate(Axis.y, 270));
+        FLIPX = get(tables, "flipx", compiled, () -> State.flip(Axis.x));
+        FLIPY = get(tables, "flipy", compiled, () -> State.flip(Axis.y));
+        FLIPZ = get(tables, "flipz", compiled, () -> State.flip(Axis.z));
+
+        CompletableFuture.allOf(ROT90, ROT180, ROT270, FLIPX, FLIPY, FLIPZ).thenRun(() -> {
+            if (compiled.get()) {
+                try {
+                    MapperTables.save(file, index.join(), tables.join());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).exceptionally(t -> {
+            t.printStackTrace();
+            return null;
+        });
     }
 
     public static State.Mapper getRotationY(int angle) {
         if (angle == 90) {
-            return ROT90;
+            return ROT90.join();
         }
         if (angle == 180) {
-            return ROT180;
+            return ROT180.join();
         }
         if (angle == 270) {
-            return ROT270;
+            return ROT270.join();
         }
         return State.emptyMapper();
     }
 
     public static State.Mapper getFlipX() {
-        return FLIPX;
+        return FLIPX.join();
     }
 
     public static State.Mapper getFlipY() {
-        return FLIPY;
+        return FLIPY.join();
     }
 
     public static State.Mapper getFlipZ() {
-        return FLIPZ;
+        return FLIPZ.join();
+    }
+
+    // each mapper that isn't in the loaded tables is built on its own pool thread
+    private static CompletableFuture<State.Mapper> get(CompletableFuture<Map<String, State.Mapper>> tables, String name, AtomicBoolean compiled, Supplier<State.Mapper> builder) {
+        return tables.thenApplyAsync(map -> {
+            State.Mapper mapper;
+            synchronized (map) {
+                mapper = map.get(name);
+            }
+
+            if (mapper == null) {
+                mapper = builder.get();
+                compiled.set(true);
+                synchronized (map) {
+                    map.put(name, mapper);
+                }
+            }
+
+            return mapper;
+        });
     }
 }
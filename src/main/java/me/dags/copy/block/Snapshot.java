@@ -1,65 +1,62 @@
 package me.dags.copy.block;
 
 import com.flowpowered.math.vector.Vector3i;
-import java.util.UUID;
+import me.dags.copy.block.volume.BufferView;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.data.Transaction;
-import org.spongepowered.api.world.BlockChangeFlag;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 /**
+ * A view of a single block in a BufferView. Changes to its position or validity are written through to the buffer.
+ *
  * @author dags <dags@dags.me>
  */
 public class Snapshot {
 
-    private final BlockState state;
-    private final BlockSnapshot.Builder builder = BlockSnapshot.builder();
-    private boolean valid = true;
+    private final BufferView view;
+    private final int index;
 
-    private Vector3i position;
     private BlockSnapshot from;
     private BlockSnapshot to;
     private Location<World> location;
     private Transaction<BlockSnapshot> transaction;
 
-    public Snapshot(BlockState state, Vector3i position, UUID owner) {
-        this.state = state;
-        this.position = position;
-        this.builder.position(position)
-                .blockState(state)
-                .notifier(owner)
-                .creator(owner);
+    public Snapshot(BufferView view, int index) {
+        this.view = view;
+        this.index = index;
     }
 
     public void setPosition(Vector3i position) {
-        this.position = position;
-        this.builder.position(position);
+        view.setPosition(index, position.getX(), position.getY(), position.getZ());
+        from = null;
+        to = null;
+        location = null;
     }
 
     public BlockState getState() {
-        return state;
+        return view.getState(index);
     }
 
     public Vector3i getPosition() {
-        return position;
+        return view.getPosition(index);
     }
 
     public void setValid(boolean valid) {
-        this.valid = valid;
+        view.setValid(index, valid);
         if (transaction != null) {
             transaction.setValid(valid);
         }
     }
 
     public boolean isValid() {
-        return transaction == null ? valid : transaction.isValid();
+        return transaction == null ? view.isValid(index) : transaction.isValid();
     }
 
     public Location<World> getLocation(World world) {
         if (location == null) {
-            location = world.getLocation(position);
+            location = world.getLocation(getPosition());
         }
         return location;
     }
@@ -67,26 +64,33 @@ public class Snapshot {
     public Transaction<BlockSnapshot> getTransaction(World world) {
         if (transaction == null) {
             transaction = new Transaction<>(getFrom(world), getTo(world));
-            transaction.setValid(valid);
+            transaction.setValid(view.isValid(index));
         }
         return transaction;
     }
 
     public BlockSnapshot getFrom(World world) {
         if (from == null) {
-            from = world.createSnapshot(position);
+            from = world.createSnapshot(getPosition());
         }
         return from;
     }
 
     public BlockSnapshot getTo(World world) {
         if (to == null) {
-            to = builder.world(world.getProperties()).build();
+            to = view.getTo(world, index);
         }
         return to;
     }
 
+    // writes the validity of the transaction (if one was created) back to the buffer
+    public void commit() {
+        if (transaction != null) {
+            view.setValid(index, transaction.isValid());
+        }
+    }
+
     public void restore(World world) {
-        getTo(world).restore(true, BlockChangeFlag.NONE);
+        view.restore(world, index);
     }
 }
@@ -0,0 +1,165 @@
+package me.dags.copy.block;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.block.trait.BlockTrait;
+import org.spongepowered.api.data.property.block.GravityAffectedProperty;
+import org.spongepowered.api.data.property.block.HardnessProperty;
+import org.spongepowered.api.data.property.block.PassableProperty;
+
+/**
+ * Gives every registered BlockState a dense ordinal (0 to size - 1) so that per-state data can be held in flat
+ * arrays. Ordinals follow the order of the state ids so they stay the same between restarts, unless the set of
+ * registered blocks changes.
+ *
+ * Also holds a set of flags per state for the properties that are checked per block in hot paths, so that they
+ * don't have to go through Sponge's property/trait lookups each time.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class StateIndex {
+
+    public static final int AIR = 1;
+    public static final int PASSABLE = 1 << 1;
+    // hardness below 0.5 (grass, flowers, snow layers etc)
+    public static final int SOFT = 1 << 2;
+    public static final int UPPER = 1 << 3;
+    public static final int LOWER = 1 << 4;
+    public static final int GRAVITY = 1 << 5;
+
+    private static volatile StateIndex instance;
+
+    private final BlockState[] states;
+    private final Map<BlockState, Integer> ordinals;
+    private final Map<BlockType, int[]> typeOrdinals;
+    private final byte[] flags;
+    private final long hash;
+
+    private StateIndex(List<BlockState> states) {
+        this.states = states.toArray(new BlockState[states.size()]);
+        this.ordinals = new IdentityHashMap<>(states.size());
+        this.flags = new byte[states.size()];
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < this.states.length; i++) {
+            ordinals.put(this.states[i], i);
+            flags[i] = (byte) computeFlags(this.states[i]);
+            // FNV-1a over the ids, in ordinal order
+            String id = this.states[i].getId();
+            for (int j = 0; j < id.length(); j++) {
+                hash = (hash ^ id.charAt(j)) * 0x100000001b3L;
+            }
+            hash = (hash ^ ';') * 0x100000001b3L;
+        }
+        this.hash = hash;
+        this.typeOrdinals = groupByType(this.states);
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    // identifies the set of registered states (and so their ordinals), ie to check that data persisted by ordinal
+    // still lines up with the current registry
+    public long getHash() {
+        return hash;
+    }
+
+    // -1 if the state is not registered
+    public int getOrdinal(BlockState state) {
+        Integer ordinal = ordinals.get(state);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public BlockState getState(int ordinal) {
+        return states[ordinal];
+    }
+
+    // the ordinals of every registered state of the type, in ascending order
+    public int[] getOrdinals(BlockType type) {
+        int[] ordinals = typeOrdinals.get(type);
+        return ordinals != null ? ordinals : new int[0];
+    }
+
+    public int getFlags(int ordinal) {
+        return flags[ordinal];
+    }
+
+    public int getFlags(BlockState state) {
+        int ordinal = getOrdinal(state);
+        return ordinal != -1 ? flags[ordinal] : computeFlags(state);
+    }
+
+    // true if the state has any of the flags in the mask
+    public boolean is(BlockState state, int mask) {
+        return (getFlags(state) & mask) != 0;
+    }
+
+    public static StateIndex getInstance() {
+        StateIndex index = instance;
+        if (index == null) {
+            synchronized (StateIndex.class) {
+                index = instance;
+                if (index == null) {
+                    instance = index = of(Sponge.getRegistry().getAllOf(BlockState.class));
+                }
+            }
+        }
+        return index;
+    }
+
+    // an index over the given states rather than the registry, ie for tests
+    public static StateIndex of(Collection<BlockState> states) {
+        List<BlockState> sorted = new ArrayList<>(states);
+        sorted.sort(Comparator.comparing(BlockState::getId));
+        return new StateIndex(sorted);
+    }
+
+    private static Map<BlockType, int[]> groupByType(BlockState[] states) {
+        Map<BlockType, List<Integer>> groups = new IdentityHashMap<>();
+        for (int i = 0; i < states.length; i++) {
+            groups.computeIfAbsent(states[i].getType(), t -> new ArrayList<>()).add(i);
+        }
+
+        Map<BlockType, int[]> ordinals = new IdentityHashMap<>(groups.size());
+        for (Map.Entry<BlockType, List<Integer>> group : groups.entrySet()) {
+            ordinals.put(group.getKey(), group.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return ordinals;
+    }
+
+    private static int computeFlags(BlockState state) {
+        int flags = 0;
+        if (state.getType() == BlockTypes.AIR) {
+            flags |= AIR;
+        }
+        if (state.getProperty(PassableProperty.class).map(PassableProperty::getValue).orElse(false)) {
+            flags |= PASSABLE;
+        }
+        Double hardness = state.getProperty(HardnessProperty.class).map(HardnessProperty::getValue).orElse(null);
+        if (hardness != null && hardness < 0.5D) {
+            flags |= SOFT;
+        }
+        if (state.getProperty(GravityAffectedProperty.class).map(GravityAffectedProperty::getValue).orElse(false)) {
+            flags |= GRAVITY;
+        }
+        Optional<BlockTrait<?>> trait = state.getTrait("half");
+        if (trait.isPresent()) {
+            String half = state.getTraitValue(trait.get()).map(Object::toString).orElse("");
+            if (half.equals("upper")) {
+                flags |= UPPER;
+            } else if (half.equals("lower")) {
+                flags |= LOWER;
+            }
+        }
+        return flags;
+    }
+}
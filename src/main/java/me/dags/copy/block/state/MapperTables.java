@@ -0,0 +1,112 @@
+package me.dags.copy.block.state;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import me.dags.copy.block.StateIndex;
+import me.dags.copy.util.BufferInput;
+import org.spongepowered.api.block.BlockState;
+
+/**
+ * Persists compiled mappers as tables of state ordinals so that they don't need compiling again on the next start.
+ * A file is only used if it was written against the same set of registered states (see StateIndex#getHash).
+ *
+ * @author dags <dags@dags.me>
+ */
+public class MapperTables {
+
+    private static final int MAGIC = 0x43504D54;
+    private static final int VERSION = 1;
+
+    // empty if the file is missing, unreadable or was written against a different registry
+    public static Map<String, State.Mapper> load(Path file, StateIndex index) {
+        Map<String, State.Mapper> mappers = new HashMap<>();
+        if (!Files.exists(file)) {
+            return mappers;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream in = new DataInputStream(new BufferInput(buffer));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != index.getHash()) {
+                return mappers;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String match = in.readUTF();
+                String replace = in.readUTF();
+                int size = in.readInt();
+                ImmutableMap.Builder<BlockState, BlockState> builder = ImmutableMap.builder();
+                for (int j = 0; j < size; j++) {
+                    BlockState from = index.getState(in.readInt());
+                    BlockState to = index.getState(in.readInt());
+                    builder.put(from, to);
+                }
+                mappers.put(name, StateMapper.of(match, replace, builder.build()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // a truncated or corrupt file just means the mappers get compiled again
+            e.printStackTrace();
+            mappers.clear();
+        }
+
+        return mappers;
+    }
+
+    // waits for each mapper to finish compiling so shouldn't be called on the main thread
+    public static void save(Path file, StateIndex index, Map<String, State.Mapper> mappers) throws IOException {
+        Map<String, StateMapper> tables = new LinkedHashMap<>();
+        for (Map.Entry<String, State.Mapper> entry : mappers.entrySet()) {
+            if (entry.getValue() instanceof StateMapper && isIndexed(index, (StateMapper) entry.getValue())) {
+                tables.put(entry.getKey(), (StateMapper) entry.getValue());
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(index.getHash());
+            out.writeInt(tables.size());
+            for (Map.Entry<String, StateMapper> entry : tables.entrySet()) {
+                StateMapper mapper = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(mapper.getMatch());
+                out.writeUTF(mapper.getReplace());
+                out.writeInt(mapper.getMappings().size());
+                for (Map.Entry<BlockState, BlockState> mapping : mapper.getMappings().entrySet()) {
+                    out.writeInt(index.getOrdinal(mapping.getKey()));
+                    out.writeInt(index.getOrdinal(mapping.getValue()));
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // a mapping to or from a state outside the registry can't be written as ordinals
+    private static boolean isIndexed(StateIndex index, StateMapper mapper) {
+        for (Map.Entry<BlockState, BlockState> mapping : mapper.getMappings().entrySet()) {
+            if (index.getOrdinal(mapping.getKey()) == -1 || index.getOrdinal(mapping.getValue()) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
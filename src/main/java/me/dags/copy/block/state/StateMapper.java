@@ -1,25 +1,38 @@
 package me.dags.copy.block.state;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import org.spongepowered.api.Sponge;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import me.dags.copy.block.StateIndex;
 import org.spongepowered.api.block.BlockState;
 
 /**
+ * Mappers are compiled in the background (in parallel, and only over the states their mergers can match) so that
+ * creating one, ie from a command or when loading a brush config, doesn't stall the server. The first use of the
+ * mapper waits for compilation to finish.
+ *
  * @author dags <dags@dags.me>
  */
 class StateMapper implements State.Mapper {
 
-    static final StateMapper EMPTY = new StateMapper("", "", Collections.emptyMap());
+    static final StateMapper EMPTY = new StateMapper("", "", CompletableFuture.completedFuture(Collections.emptyMap()));
 
-    private final Map<BlockState, BlockState> mappings;
+    // single-merger mappers are fully described by their match & replace so can be shared
+    private static final Cache<List<String>, State.Mapper> INTERN = Caffeine.newBuilder().maximumSize(512).build();
+
+    private final CompletableFuture<Map<BlockState, BlockState>> mappings;
     private final String match;
     private final String replace;
 
-    StateMapper(String match, String replace, Map<BlockState, BlockState> states) {
-        this.mappings = states;
+    private StateMapper(String match, String replace, CompletableFuture<Map<BlockState, BlockState>> mappings) {
+        this.mappings = mappings;
         this.match = match;
         this.replace = replace;
     }
@@ -42,40 +55,72 @@ class StateMapper implements State.Mapper {
     @Override
     public BlockState map(BlockState state) {
         if (isPresent()) {
-            return mappings.getOrDefault(state, state);
+            return mappings.join().getOrDefault(state, state);
         }
         return state;
     }
 
+    // waits for compilation to finish
+    Map<BlockState, BlockState> getMappings() {
+        return mappings.join();
+    }
+
     @Override
     public String toString() {
-        return mappings.toString();
+        return mappings.isDone() ? mappings.join().toString() : "compiling";
+    }
+
+    // a mapper whose mappings are already known, ie loaded from disk
+    static State.Mapper of(String match, String replace, Map<BlockState, BlockState> mappings) {
+        return new StateMapper(match, replace, CompletableFuture.completedFuture(mappings));
+    }
+
+    static State.Mapper mapper(StateMerger merger) {
+        List<String> key = Arrays.asList(merger.getMatch(), merger.getReplace());
+        return INTERN.get(key, k -> mapper(merger.getMatch(), merger.getReplace(), merger));
     }
 
+    // finding the candidates compiles each merger's matcher (a scan of the whole index), so that's done in the
+    // background too
     static State.Mapper mapper(String match, String replace, Iterable<Merger> mergers) {
-        Map<BlockState, BlockState> map = new HashMap<>();
-        Sponge.getRegistry().getAllOf(BlockState.class).forEach(state -> {
+        return new StateMapper(match, replace, CompletableFuture.supplyAsync(() -> {
+            StateIndex index = StateIndex.getInstance();
+            BitSet candidates = new BitSet(index.size());
             for (Merger merger : mergers) {
-                BlockState result = merger.merge(state);
-                if (result != state) {
-                    map.put(state, result);
-                }
+                addCandidates(merger, candidates, index);
             }
-        });
-        return new StateMapper(match, replace, ImmutableMap.copyOf(map));
+            return compile(index, candidates, mergers);
+        }));
     }
 
-
     static State.Mapper mapper(String match, String replace, State.Merger... mergers) {
-        Map<BlockState, BlockState> map = new HashMap<>();
-        Sponge.getRegistry().getAllOf(BlockState.class).forEach(state -> {
-            for (Merger merger : mergers) {
-                BlockState result = merger.merge(state);
-                if (result != state) {
-                    map.put(state, result);
-                }
-            }
-        });
-        return new StateMapper(match, replace, ImmutableMap.copyOf(map));
+        return mapper(match, replace, Arrays.asList(mergers));
+    }
+
+    private static void addCandidates(Merger merger, BitSet candidates, StateIndex index) {
+        if (merger instanceof StateMerger) {
+            ((StateMerger) merger).addCandidates(candidates);
+        } else {
+            candidates.set(0, index.size());
+        }
+    }
+
+    // a merger can only change states its matcher accepts, so the rest of the index is never visited
+    private static Map<BlockState, BlockState> compile(StateIndex index, BitSet candidates, Iterable<Merger> mergers) {
+        Map<BlockState, BlockState> map = candidates.stream().parallel()
+                .mapToObj(index::getState)
+                .map(state -> {
+                    BlockState mapped = state;
+                    for (Merger merger : mergers) {
+                        BlockState result = merger.merge(state);
+                        if (result != state) {
+                            mapped = result;
+                        }
+                    }
+                    return new BlockState[]{state, mapped};
+                })
+                .filter(pair -> pair[0] != pair[1])
+                .collect(Collectors.toMap(pair -> pair[0], pair -> pair[1]));
+        return ImmutableMap.copyOf(map);
     }
 }
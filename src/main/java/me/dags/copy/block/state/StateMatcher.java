@@ -1,21 +1,40 @@
 package me.dags.copy.block.state;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Map;
+import me.dags.copy.block.StateIndex;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.block.trait.BlockTrait;
 
 /**
+ * Matchers are compiled to the set of registered state ordinals that they match, so matching a registered state is a
+ * single bit test. Compiling tests each registered state of the matcher's type, so it's only done on first use
+ * (normally inside a mapper's background compile), and interned matchers share the result.
+ *
  * @author dags <dags@dags.me>
  */
 class StateMatcher implements State.Matcher {
 
-    static StateMatcher EMPTY = new StateMatcher(BlockTypes.AIR, Collections.emptyMap());
+    static StateMatcher EMPTY = new StateMatcher();
+
+    // matchers are immutable so the same input can share a single compiled instance
+    private static final Cache<String, State.Matcher> INTERN = Caffeine.newBuilder().maximumSize(512).build();
 
     private final BlockType type;
     private final Map<String, Object> properties;
+    private final Supplier<BitSet> matches = Suppliers.memoize(this::compileMatches);
+
+    private StateMatcher() {
+        this.type = BlockTypes.AIR;
+        this.properties = Collections.emptyMap();
+    }
 
     private StateMatcher(BlockType type, Map<String, Object> map) {
         this.type = type;
@@ -33,6 +52,43 @@ class StateMatcher implements State.Matcher {
             return false;
         }
 
+        int ordinal = StateIndex.getInstance().getOrdinal(state);
+        if (ordinal != -1) {
+            return matches.get().get(ordinal);
+        }
+
+        return test(state);
+    }
+
+    // compiles the matcher if it hasn't been already
+    void addMatches(BitSet bits) {
+        if (isPresent()) {
+            bits.or(matches.get());
+        }
+    }
+
+    // only the states of the matcher's type can match, unless it matches any type
+    private BitSet compileMatches() {
+        StateIndex index = StateIndex.getInstance();
+        BitSet bits = new BitSet(index.size());
+        if (type == BlockAny.TYPE) {
+            for (int i = 0; i < index.size(); i++) {
+                if (test(index.getState(i))) {
+                    bits.set(i);
+                }
+            }
+        } else {
+            for (int ordinal : index.getOrdinals(type)) {
+                if (test(index.getState(ordinal))) {
+                    bits.set(ordinal);
+                }
+            }
+        }
+        return bits;
+    }
+
+    // the uncompiled match, for states that aren't in the index
+    private boolean test(BlockState state) {
         if (state.getType() != type && type != BlockAny.TYPE) {
             return false;
         }
@@ -64,6 +120,10 @@ class StateMatcher implements State.Matcher {
     }
 
     static State.Matcher parse(String input) {
+        return INTERN.get(input, StateMatcher::compile);
+    }
+
+    private static State.Matcher compile(String input) {
         State.Properties properties = State.properties(input);
 
         if (properties.getType() == BlockAny.TYPE && properties.getProperties().isEmpty()) {
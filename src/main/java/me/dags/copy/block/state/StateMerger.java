@@ -1,10 +1,10 @@
 package me.dags.copy.block.state;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
@@ -94,21 +94,19 @@ class StateMerger implements State.Merger {
     @Override
     public State.Mapper toMapper() {
         if (isPresent()) {
-            ImmutableMap.Builder<BlockState, BlockState> builder = ImmutableMap.builder();
-
-            Sponge.getRegistry().getAllOf(BlockState.class).forEach(state -> {
-                BlockState merged = merge(state);
-                if (merged != state) {
-                    builder.put(state, merged);
-                }
-            });
-
-            return new StateMapper(match, replace, builder.build());
+            return StateMapper.mapper(this);
         }
 
         return StateMapper.EMPTY;
     }
 
+    // marks the (indexed) states that this merger could change
+    void addCandidates(BitSet candidates) {
+        if (isPresent() && matcher instanceof StateMatcher) {
+            ((StateMatcher) matcher).addMatches(candidates);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s {%s=%s}", matcher, type, properties);
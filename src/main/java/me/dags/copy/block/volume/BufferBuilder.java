@@ -2,50 +2,107 @@ package me.dags.copy.block.volume;
 
 import com.flowpowered.math.vector.Vector3i;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import me.dags.copy.block.Snapshot;
 import org.spongepowered.api.block.BlockState;
 
 /**
+ * Builds a packed buffer of block changes. Rather than an object per block, each block is stored as an int
+ * (its position relative to the buffer's position) and a short (the index of its state in the buffer's palette).
+ *
  * @author dags <dags@dags.me>
  */
 public class BufferBuilder implements Buffer<BlockState, Snapshot> {
 
-    private final List<Snapshot> list;
+    private static final int MAX_PALETTE = 1 << 16;
+
     private final Vector3i position;
     private final UUID owner;
+    private final List<BlockState> palette = new ArrayList<>();
+    private final Map<BlockState, Integer> paletteIds = new HashMap<>();
+
+    private int[] positions;
+    private short[] states;
+    private int size = 0;
 
     public BufferBuilder(UUID uuid, Vector3i position, int size) {
         this.owner = uuid;
         this.position = position;
-        this.list = new ArrayList<>(size);
+        this.positions = new int[Math.max(16, size)];
+        this.states = new short[Math.max(16, size)];
+    }
+
+    public Vector3i getPosition() {
+        return position;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // true if the absolute x/z coordinates can be stored relative to this buffer's position
+    public boolean contains(int x, int z) {
+        return Packing.contains(x - position.getX(), z - position.getZ());
     }
 
     @Override
     public void addRelative(BlockState state, int x, int y, int z) {
-        addRelative(state, this.position.add(x, y, z));
+        add(state, x, position.getY() + y, z);
     }
 
     public void addRelative(BlockState state, Vector3i position) {
-        if (position.getY() >= 0 && position.getY() < 256) {
-            list.add(new Snapshot(state, position, owner));
-        }
+        addRelative(state, position.getX(), position.getY(), position.getZ());
     }
 
     @Override
     public void addAbsolute(BlockState state, int x, int y, int z) {
-        addAbsolute(state, new Vector3i(x, y, z));
+        add(state, x - position.getX(), y, z - position.getZ());
     }
 
     public void addAbsolute(BlockState state, Vector3i position) {
-        if (position.getY() >= 0 && position.getY() < 256) {
-            list.add(new Snapshot(state, position, owner));
-        }
+        addAbsolute(state, position.getX(), position.getY(), position.getZ());
     }
 
     @Override
     public BufferView getView() {
-        return new BufferView(list);
+        BlockState[] palette = this.palette.toArray(new BlockState[this.palette.size()]);
+        return new BufferView(owner, position, palette, positions, states, size);
+    }
+
+    private void add(BlockState state, int relX, int y, int relZ) {
+        if (y < 0 || y >= 256) {
+            return;
+        }
+
+        if (!Packing.contains(relX, relZ)) {
+            throw new IllegalArgumentException("Position is too far from the buffer origin: " + relX + "," + relZ);
+        }
+
+        if (size == positions.length) {
+            int capacity = positions.length + (positions.length >> 1);
+            positions = Arrays.copyOf(positions, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+
+        positions[size] = Packing.pack(relX, y, relZ);
+        states[size] = (short) getId(state);
+        size++;
+    }
+
+    private int getId(BlockState state) {
+        Integer id = paletteIds.get(state);
+        if (id == null) {
+            if (palette.size() == MAX_PALETTE) {
+                throw new IllegalStateException("Buffer palette is full");
+            }
+            id = palette.size();
+            palette.add(state);
+            paletteIds.put(state, id);
+        }
+        return id;
     }
 }
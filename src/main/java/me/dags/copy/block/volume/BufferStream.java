@@ -0,0 +1,75 @@
+package me.dags.copy.block.volume;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded channel of BufferViews passed from an async producer (ie the VolumeMapper) to an operation on the
+ * main thread. The producer blocks while the channel is full so only a few buffers are held in memory at once.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class BufferStream {
+
+    private static final long WAIT = 50L;
+
+    private final BlockingQueue<BufferView> queue;
+
+    private volatile boolean complete = false;
+    private volatile boolean cancelled = false;
+    private volatile Throwable error = null;
+
+    public BufferStream(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // producer - waits for space in the channel, returns false if the consumer has gone away
+    public boolean put(BufferView view) throws InterruptedException {
+        while (!cancelled) {
+            if (queue.offer(view, WAIT, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // producer - no more buffers will be added
+    public void complete() {
+        complete = true;
+    }
+
+    // producer - no more buffers will be added because something went wrong
+    public void fail(Throwable t) {
+        error = t;
+        complete = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // consumer - the next buffer, or null if none are ready yet
+    public BufferView poll() {
+        return queue.poll();
+    }
+
+    // consumer - true once the producer has finished and every buffer has been taken
+    public boolean isDone() {
+        return complete && queue.isEmpty();
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    // consumer - stop the producer and drop any buffers that are waiting
+    public void cancel() {
+        cancelled = true;
+        queue.clear();
+    }
+}
@@ -1,22 +1,202 @@
 package me.dags.copy.block.volume;
 
+import com.flowpowered.math.vector.Vector3i;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.UUID;
 import me.dags.copy.block.Snapshot;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.BlockChangeFlag;
+import org.spongepowered.api.world.World;
 
 /**
  * @author dags <dags@dags.me>
  */
 public class BufferView implements Buffer.View<Snapshot> {
 
-    private final List<Snapshot> list;
+    private static final int[] UNORDERED = new int[0];
 
-    public BufferView(List<Snapshot> list) {
-        this.list = list;
+    private final UUID owner;
+    private final Vector3i position;
+    private final BlockState[] palette;
+
+    private int size;
+    private int[] positions;
+    private short[] states;
+    private BitSet valid;
+    private int[] chunks = UNORDERED;
+    private BlockSnapshot.Builder builder;
+
+    BufferView(UUID owner, Vector3i position, BlockState[] palette, int[] positions, short[] states, int size) {
+        this.owner = owner;
+        this.position = position;
+        this.palette = palette;
+        this.positions = positions;
+        this.states = states;
+        this.size = size;
+        this.valid = new BitSet(size);
+        this.valid.set(0, size);
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BlockState getState(int index) {
+        return palette[states[index] & 0xFFFF];
+    }
+
+    public int getX(int index) {
+        return position.getX() + Packing.x(positions[index]);
+    }
+
+    public int getY(int index) {
+        return Packing.y(positions[index]);
+    }
+
+    public int getZ(int index) {
+        return position.getZ() + Packing.z(positions[index]);
+    }
+
+    public Vector3i getPosition(int index) {
+        return new Vector3i(getX(index), getY(index), getZ(index));
+    }
+
+    // moves the block to a new absolute position, invalidating it if the position cannot be stored
+    public void setPosition(int index, int x, int y, int z) {
+        int relX = x - position.getX();
+        int relZ = z - position.getZ();
+        if (y < 0 || y >= 256 || !Packing.contains(relX, relZ)) {
+            valid.clear(index);
+            return;
+        }
+        positions[index] = Packing.pack(relX, y, relZ);
+    }
+
+    public boolean isValid(int index) {
+        return valid.get(index);
+    }
+
+    public void setValid(int index, boolean value) {
+        valid.set(index, value);
+    }
+
+    public Snapshot getSnapshot(int index) {
+        return new Snapshot(this, index);
+    }
+
+    public BlockSnapshot getTo(World world, int index) {
+        return BlockSnapshot.builder()
+                .world(world.getProperties())
+                .position(getPosition(index))
+                .blockState(getState(index))
+                .notifier(owner)
+                .creator(owner)
+                .build();
+    }
+
+    // main thread only, reuses a single snapshot builder for every block restored by this view
+    public void restore(World world, int index) {
+        if (builder == null) {
+            builder = BlockSnapshot.builder().world(world.getProperties()).notifier(owner).creator(owner);
+        }
+        BlockSnapshot snapshot = builder.position(getPosition(index)).blockState(getState(index)).build();
+        snapshot.restore(true, BlockChangeFlag.NONE);
+    }
+
+    // groups the (valid) blocks in the view by chunk and then by section
+    public void sortByChunk() {
+        ChunkOrder order = new ChunkOrder();
+        for (int i = valid.nextSetBit(0); i >= 0 && i < size; i = valid.nextSetBit(i + 1)) {
+            order.add(i, getX(i), getY(i), getZ(i));
+        }
+        setOrder(order);
+    }
+
+    // rearranges the view into the order collected by the ChunkOrder, dropping any blocks not included in it
+    public void setOrder(ChunkOrder order) {
+        int[] indices = order.getIndices();
+        int[] positions = new int[indices.length];
+        short[] states = new short[indices.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            positions[i] = this.positions[indices[i]];
+            states[i] = this.states[indices[i]];
+        }
+
+        this.size = indices.length;
+        this.positions = positions;
+        this.states = states;
+        this.valid = new BitSet(size);
+        this.valid.set(0, size);
+        this.chunks = order.getChunks();
+    }
+
+    // the index to stop at when processing up to 'limit' blocks from 'start' without splitting a chunk,
+    // unless the chunk at 'start' is larger than the limit itself
+    public int getChunkEnd(int start, int limit) {
+        int end = (int) Math.min(size, (long) start + limit);
+        if (end == size || chunks.length == 0) {
+            return end;
+        }
+
+        int index = Arrays.binarySearch(chunks, end);
+        if (index >= 0) {
+            return end;
+        }
+
+        int previous = -index - 2;
+        if (previous >= 0 && chunks[previous] > start) {
+            return chunks[previous];
+        }
+
+        return end;
+    }
+
+    // a copy of the view at a new position, with every y coordinate shifted by dy
+    // the palette & states are shared (neither is modified in place) so only the positions are copied
+    BufferView copyTo(UUID owner, Vector3i position, int dy) {
+        int[] positions = new int[size];
+        BufferView copy = new BufferView(owner, position, palette, positions, states, size);
+        for (int i = 0; i < size; i++) {
+            int packed = this.positions[i];
+            int y = Packing.y(packed) + dy;
+            if (y < 0 || y >= 256) {
+                copy.valid.clear(i);
+                positions[i] = packed;
+            } else {
+                positions[i] = Packing.pack(Packing.x(packed), y, Packing.z(packed));
+            }
+        }
+        return copy;
+    }
+
+    // estimated memory held by the view's arrays
+    long getBytes() {
+        return positions.length * 4L + states.length * 2L + palette.length * 8L;
     }
 
     @Override
     public Iterator<Snapshot> iterator() {
-        return list.iterator();
+        return new Iterator<Snapshot>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Snapshot next() {
+                return getSnapshot(index++);
+            }
+        };
     }
 }
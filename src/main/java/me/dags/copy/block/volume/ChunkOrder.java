@@ -0,0 +1,106 @@
+package me.dags.copy.block.volume;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groups buffer indices by chunk, and by section within each chunk, as their final positions become known so that
+ * they can be applied one whole chunk at a time.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class ChunkOrder {
+
+    private final Map<Long, Column> columns = new HashMap<>();
+    private int size = 0;
+
+    private int[] indices;
+    private int[] chunks;
+
+    public void add(int index, int x, int y, int z) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        int section = Math.max(0, Math.min(15, y >> 4));
+        Column column = columns.computeIfAbsent(getKey(cx, cz), k -> new Column(cx, cz));
+        column.add(section, index);
+        size++;
+        indices = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // the buffer indices in chunk order
+    int[] getIndices() {
+        sort();
+        return indices;
+    }
+
+    // the (exclusive) end index of each chunk within getIndices()
+    int[] getChunks() {
+        sort();
+        return chunks;
+    }
+
+    private void sort() {
+        if (indices != null) {
+            return;
+        }
+
+        Column[] order = columns.values().toArray(new Column[columns.size()]);
+        Arrays.sort(order, Column::compareTo);
+
+        indices = new int[size];
+        chunks = new int[order.length];
+
+        int offset = 0;
+        for (int i = 0; i < order.length; i++) {
+            offset = order[i].drainTo(indices, offset);
+            chunks[i] = offset;
+        }
+    }
+
+    private static long getKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private static class Column implements Comparable<Column> {
+
+        private final int x;
+        private final int z;
+        private final int[][] sections = new int[16][];
+        private final int[] sizes = new int[16];
+
+        private Column(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        private void add(int section, int index) {
+            int[] list = sections[section];
+            if (list == null) {
+                sections[section] = list = new int[64];
+            } else if (sizes[section] == list.length) {
+                sections[section] = list = Arrays.copyOf(list, list.length << 1);
+            }
+            list[sizes[section]++] = index;
+        }
+
+        private int drainTo(int[] indices, int offset) {
+            for (int i = 0; i < sections.length; i++) {
+                if (sections[i] != null) {
+                    System.arraycopy(sections[i], 0, indices, offset, sizes[i]);
+                    offset += sizes[i];
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        public int compareTo(Column o) {
+            return z != o.z ? Integer.compare(z, o.z) : Integer.compare(x, o.x);
+        }
+    }
+}
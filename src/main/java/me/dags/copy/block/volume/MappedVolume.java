@@ -0,0 +1,58 @@
+package me.dags.copy.block.volume;
+
+import com.flowpowered.math.vector.Vector3i;
+import java.util.List;
+import java.util.UUID;
+import me.dags.copy.operation.callback.Callback;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+
+/**
+ * The slabs produced by a VolumeMapper, held independently of any paste position so that the same transformed
+ * volume can be pasted again without re-mapping the source. Slab y coordinates are stored relative to the lowest
+ * y that the mapped volume can reach.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class MappedVolume {
+
+    private final List<BufferView> slabs;
+    private final int minY;
+    private final long bytes;
+
+    MappedVolume(List<BufferView> slabs, int minY) {
+        this.slabs = slabs;
+        this.minY = minY;
+        this.bytes = slabs.stream().mapToLong(BufferView::getBytes).sum();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // roughly what getBytes() will be once the source has been mapped (a position & state per block)
+    public static long estimateBytes(ImmutableBlockVolume source) {
+        Vector3i size = source.getBlockSize();
+        return (long) size.getX() * size.getY() * size.getZ() * 6L;
+    }
+
+    public Runnable createTask(Vector3i position, UUID owner, Callback callback) {
+        return () -> {
+            try {
+                BufferStream stream = callback.open();
+                apply(position, owner, stream);
+                stream.complete();
+            } catch (Throwable t) {
+                callback.onFailure(t);
+            }
+        };
+    }
+
+    public void apply(Vector3i position, UUID owner, BufferStream stream) throws InterruptedException {
+        int dy = position.getY() + minY;
+        for (BufferView slab : slabs) {
+            if (stream.isCancelled() || !stream.put(slab.copyTo(owner, position, dy))) {
+                return;
+            }
+        }
+    }
+}
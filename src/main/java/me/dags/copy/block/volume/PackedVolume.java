@@ -0,0 +1,292 @@
+package me.dags.copy.block.volume;
+
+import com.flowpowered.math.vector.Vector3i;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.StorageType;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMerger;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeReducer;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeVisitor;
+
+/**
+ * An immutable volume of block states held as 16x16x16 sections, each with its own palette and its blocks stored as
+ * bit-packed palette indices. Sections of a single state (ie air) hold no index data at all.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class PackedVolume implements ImmutableBlockVolume {
+
+    public static final int SECTION_SIZE = 16;
+    public static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+
+    private final Vector3i min;
+    private final Vector3i max;
+    private final Vector3i size;
+    private final int sectionsX;
+    private final int sectionsZ;
+    private final Section[] sections;
+
+    public PackedVolume(Vector3i min, Vector3i size, Section[] sections) {
+        this.min = min;
+        this.size = size;
+        this.max = min.add(size).sub(Vector3i.ONE);
+        this.sectionsX = getSections(size.getX());
+        this.sectionsZ = getSections(size.getZ());
+        this.sections = sections;
+        if (sections.length != getSectionCount(size)) {
+            throw new IllegalArgumentException("Expected " + getSectionCount(size) + " sections, got " + sections.length);
+        }
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    public Section getSection(int index) {
+        return sections[index];
+    }
+
+    @Override
+    public Vector3i getBlockMin() {
+        return min;
+    }
+
+    @Override
+    public Vector3i getBlockMax() {
+        return max;
+    }
+
+    @Override
+    public Vector3i getBlockSize() {
+        return size;
+    }
+
+    @Override
+    public boolean containsBlock(int x, int y, int z) {
+        return x >= min.getX() && x <= max.getX()
+                && y >= min.getY() && y <= max.getY()
+                && z >= min.getZ() && z <= max.getZ();
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        int rx = x - min.getX();
+        int ry = y - min.getY();
+        int rz = z - min.getZ();
+        Section section = sections[((ry >> 4) * sectionsZ + (rz >> 4)) * sectionsX + (rx >> 4)];
+        return section.get(getIndex(rx, ry, rz));
+    }
+
+    @Override
+    public BlockType getBlockType(int x, int y, int z) {
+        return getBlock(x, y, z).getType();
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MutableBlockVolume getBlockCopy(StorageType type) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ImmutableBlockVolume getImmutableBlockCopy() {
+        return this;
+    }
+
+    @Override
+    public BlockVolumeWorker<? extends ImmutableBlockVolume> getBlockWorker(Cause cause) {
+        return new BlockVolumeWorker<ImmutableBlockVolume>() {
+            @Override
+            public ImmutableBlockVolume getVolume() {
+                return PackedVolume.this;
+            }
+
+            @Override
+            public void map(BlockVolumeMapper mapper, MutableBlockVolume destination) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void merge(BlockVolume second, BlockVolumeMerger merger, MutableBlockVolume destination) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void iterate(BlockVolumeVisitor<ImmutableBlockVolume> visitor) {
+                for (int y = min.getY(); y <= max.getY(); y++) {
+                    for (int z = min.getZ(); z <= max.getZ(); z++) {
+                        for (int x = min.getX(); x <= max.getX(); x++) {
+                            visitor.visit(getVolume(), x, y, z);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public <T> T reduce(BlockVolumeReducer<T> reducer, BiFunction<T, T, T> merge, T identity) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // packs a copy of the source volume, sections are packed in parallel so the source must be safe to read from
+    // multiple threads (ie immutable)
+    public static PackedVolume of(BlockVolume source) {
+        Vector3i min = source.getBlockMin();
+        Vector3i size = source.getBlockMax().sub(min).add(Vector3i.ONE);
+        int sectionsX = getSections(size.getX());
+        int sectionsZ = getSections(size.getZ());
+
+        Section[] sections = new Section[getSectionCount(size)];
+        IntStream.range(0, sections.length).parallel().forEach(i -> {
+            int sx = i % sectionsX;
+            int sz = (i / sectionsX) % sectionsZ;
+            int sy = i / (sectionsX * sectionsZ);
+            sections[i] = pack(source, min, size, sx * SECTION_SIZE, sy * SECTION_SIZE, sz * SECTION_SIZE);
+        });
+
+        return new PackedVolume(min, size, sections);
+    }
+
+    public static int getSectionCount(Vector3i size) {
+        return getSections(size.getX()) * getSections(size.getY()) * getSections(size.getZ());
+    }
+
+    private static Section pack(BlockVolume source, Vector3i min, Vector3i size, int offX, int offY, int offZ) {
+        BlockState[] blocks = new BlockState[SECTION_VOLUME];
+        int maxX = Math.min(SECTION_SIZE, size.getX() - offX);
+        int maxY = Math.min(SECTION_SIZE, size.getY() - offY);
+        int maxZ = Math.min(SECTION_SIZE, size.getZ() - offZ);
+        for (int y = 0; y < maxY; y++) {
+            for (int z = 0; z < maxZ; z++) {
+                for (int x = 0; x < maxX; x++) {
+                    blocks[getIndex(x, y, z)] = source.getBlock(min.getX() + offX + x, min.getY() + offY + y, min.getZ() + offZ + z);
+                }
+            }
+        }
+        return Section.pack(blocks);
+    }
+
+    public static int getSections(int length) {
+        return (length + SECTION_SIZE - 1) / SECTION_SIZE;
+    }
+
+    public static int getIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    public static class Section {
+
+        private final BlockState[] palette;
+        private final long[] data;
+        private final int bits;
+        private final int perLong;
+        private final long mask;
+
+        public Section(BlockState[] palette, int bits, long[] data) {
+            this.palette = palette;
+            this.bits = bits;
+            this.data = data;
+            this.perLong = bits == 0 ? 0 : 64 / bits;
+            this.mask = (1L << bits) - 1;
+            if (bits > 0 && data.length != getDataLength(bits)) {
+                throw new IllegalArgumentException("Expected " + getDataLength(bits) + " longs, got " + data.length);
+            }
+        }
+
+        public BlockState[] getPalette() {
+            return palette;
+        }
+
+        public int getBits() {
+            return bits;
+        }
+
+        public long[] getData() {
+            return data;
+        }
+
+        public BlockState get(int index) {
+            if (bits == 0) {
+                return palette[0];
+            }
+            long word = data[index / perLong];
+            int shift = (index % perLong) * bits;
+            return palette[(int) ((word >>> shift) & mask)];
+        }
+
+        // packs the blocks of a section, held in section index order. null entries are positions past the edge of the
+        // volume which are never read, so they just repeat the first state
+        public static Section pack(BlockState[] blocks) {
+            Map<BlockState, Integer> ids = new HashMap<>();
+            List<BlockState> palette = new ArrayList<>();
+            int[] indices = new int[SECTION_VOLUME];
+            for (int i = 0; i < blocks.length; i++) {
+                BlockState state = blocks[i];
+                if (state == null) {
+                    continue;
+                }
+                Integer id = ids.get(state);
+                if (id == null) {
+                    id = palette.size();
+                    ids.put(state, id);
+                    palette.add(state);
+                }
+                indices[i] = id;
+            }
+            return of(palette.toArray(new BlockState[palette.size()]), indices);
+        }
+
+        public static Section of(BlockState[] palette, int[] indices) {
+            int bits = getBits(palette.length);
+            if (bits == 0) {
+                return new Section(palette, 0, new long[0]);
+            }
+
+            int perLong = 64 / bits;
+            long[] data = new long[getDataLength(bits)];
+            for (int i = 0; i < indices.length; i++) {
+                data[i / perLong] |= ((long) indices[i]) << ((i % perLong) * bits);
+            }
+            return new Section(palette, bits, data);
+        }
+
+        // indices don't span two longs, so some bits at the top of each long may go unused
+        public static int getDataLength(int bits) {
+            int perLong = 64 / bits;
+            return (SECTION_VOLUME + perLong - 1) / perLong;
+        }
+
+        public static int getBits(int paletteSize) {
+            return paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+        }
+    }
+}
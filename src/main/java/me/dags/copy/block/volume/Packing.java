@@ -0,0 +1,37 @@
+package me.dags.copy.block.volume;
+
+/**
+ * Packs a block position into an int: 12 bits each for the x & z offset from the buffer's position
+ * (-2048 to 2047) and 8 bits for the absolute y coordinate (0 to 255).
+ *
+ * @author dags <dags@dags.me>
+ */
+class Packing {
+
+    private static final int RANGE = 2048;
+
+    static boolean contains(int relX, int relZ) {
+        return relX >= -RANGE && relX < RANGE && relZ >= -RANGE && relZ < RANGE;
+    }
+
+    // true if every x/z offset within the given distance of the buffer's position (in either direction) can be stored
+    static boolean contains(long distance) {
+        return distance < RANGE;
+    }
+
+    static int pack(int relX, int y, int relZ) {
+        return ((relX & 0xFFF) << 20) | ((relZ & 0xFFF) << 8) | (y & 0xFF);
+    }
+
+    static int x(int packed) {
+        return packed >> 20;
+    }
+
+    static int y(int packed) {
+        return packed & 0xFF;
+    }
+
+    static int z(int packed) {
+        return (packed << 12) >> 20;
+    }
+}
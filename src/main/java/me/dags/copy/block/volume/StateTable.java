@@ -0,0 +1,84 @@
+package me.dags.copy.block.volume;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import me.dags.copy.block.StateIndex;
+import me.dags.copy.block.state.State;
+import org.spongepowered.api.block.BlockState;
+
+/**
+ * A chain of State.Mappers compiled into a single lookup table indexed by StateIndex ordinal, along with the
+ * y-offset each resulting state needs when the volume is flipped vertically.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class StateTable {
+
+    // mappers don't implement equals so chains are keyed by the identity of each mapper in them
+    private static final Cache<List<State.Mapper>, StateTable> CACHE = Caffeine.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .maximumSize(64)
+            .build();
+
+    private final StateIndex index;
+    private final List<State.Mapper> mappers;
+    private final BlockState[] states;
+    private final byte[] flipYOffsets;
+
+    private StateTable(StateIndex index, List<State.Mapper> mappers) {
+        this.index = index;
+        this.mappers = mappers;
+        this.states = new BlockState[index.size()];
+        this.flipYOffsets = new byte[index.size()];
+
+        for (int i = 0; i < states.length; i++) {
+            BlockState state = apply(index.getState(i));
+            states[i] = state;
+            flipYOffsets[i] = (byte) getFlipYOffset(index.getFlags(state));
+        }
+    }
+
+    public int getOrdinal(BlockState state) {
+        return index.getOrdinal(state);
+    }
+
+    public BlockState map(int ordinal) {
+        return states[ordinal];
+    }
+
+    public int getFlipYOffset(int ordinal) {
+        return flipYOffsets[ordinal];
+    }
+
+    // for states that aren't in the index
+    public BlockState apply(BlockState state) {
+        for (State.Mapper mapper : mappers) {
+            state = mapper.map(state);
+        }
+        return state;
+    }
+
+    // for (mapped) states that aren't in the index
+    public int getFlipYOffset(BlockState state) {
+        return getFlipYOffset(index.getFlags(state));
+    }
+
+    public static StateTable of(Collection<State.Mapper> mappers) {
+        List<State.Mapper> key = ImmutableList.copyOf(mappers);
+        return CACHE.get(key, k -> new StateTable(StateIndex.getInstance(), k));
+    }
+
+    private static int getFlipYOffset(int flags) {
+        if ((flags & StateIndex.UPPER) != 0) {
+            return 1;
+        }
+        if ((flags & StateIndex.LOWER) != 0) {
+            return -1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,97 @@
+package me.dags.copy.block.volume;
+
+/**
+ * An integer transform for rotations about the y axis combined with flips on each axis.
+ *
+ * Flips are applied first, then the nearest quarter turn, so that part collapses to a 2x2 matrix of -1/0/1 values
+ * and each block costs a couple of multiplies rather than any trig. Whatever is left of the angle (at most 45
+ * degrees either way) is applied as three shears (Paeth rotation). Each shear moves whole rows of blocks so the
+ * result has no gaps or overlaps.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class Transform {
+
+    private final int xx;
+    private final int xz;
+    private final int zx;
+    private final int zz;
+    private final boolean flipY;
+    private final boolean sheared;
+    private final double tan;
+    private final double sin;
+
+    private Transform(int cos, int sin, double residual, boolean flipX, boolean flipY, boolean flipZ) {
+        int fx = flipX ? -1 : 1;
+        int fz = flipZ ? -1 : 1;
+        // x' = x.cos - z.sin, z' = x.sin + z.cos
+        this.xx = cos * fx;
+        this.xz = -sin * fz;
+        this.zx = sin * fx;
+        this.zz = cos * fz;
+        this.flipY = flipY;
+        this.sheared = residual != 0;
+        this.tan = Math.tan(residual / 2);
+        this.sin = Math.sin(residual);
+    }
+
+    public boolean isSheared() {
+        return sheared;
+    }
+
+    public int getX(int x, int z) {
+        return xx * x + xz * z;
+    }
+
+    public int getY(int y, int flipYOffset) {
+        return flipY ? flipYOffset - y : y;
+    }
+
+    public int getZ(int x, int z) {
+        return zx * x + zz * z;
+    }
+
+    // the first & third shears, applied to the quarter-turned x/z
+    public int shearX(int x, int z) {
+        return x - (int) Math.round(tan * z);
+    }
+
+    // the second shear, applied to the quarter-turned z & the result of the first shear
+    public int shearZ(int x, int z) {
+        return z + (int) Math.round(sin * x);
+    }
+
+    public static boolean isQuarterTurn(int angle) {
+        return angle % 90 == 0;
+    }
+
+    // the quarter turn (0, 90, 180 or 270) closest to the angle
+    public static int getQuarterTurn(int angle) {
+        int quarter = Math.round(normalize(angle) / 90F) * 90;
+        return quarter % 360;
+    }
+
+    public static Transform of(int angle, boolean flipX, boolean flipY, boolean flipZ) {
+        int quarter = getQuarterTurn(angle);
+        int residual = normalize(angle) - quarter;
+        if (residual > 180) {
+            residual -= 360;
+        }
+
+        double radians = Math.toRadians(residual);
+        switch (quarter) {
+            case 90:
+                return new Transform(0, 1, radians, flipX, flipY, flipZ);
+            case 180:
+                return new Transform(-1, 0, radians, flipX, flipY, flipZ);
+            case 270:
+                return new Transform(0, -1, radians, flipX, flipY, flipZ);
+            default:
+                return new Transform(1, 0, radians, flipX, flipY, flipZ);
+        }
+    }
+
+    private static int normalize(int angle) {
+        return ((angle % 360) + 360) % 360;
+    }
+}
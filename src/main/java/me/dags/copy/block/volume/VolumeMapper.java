@@ -1,13 +1,21 @@
 package me.dags.copy.block.volume;
 
 import com.flowpowered.math.vector.Vector3i;
-import com.google.common.util.concurrent.FutureCallback;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
 import me.dags.copy.block.state.State;
+import me.dags.copy.operation.callback.Callback;
 import org.spongepowered.api.block.BlockState;
-import org.spongepowered.api.block.trait.BlockTrait;
 import org.spongepowered.api.world.extent.ImmutableBlockVolume;
 
 /**
@@ -15,47 +23,137 @@ import org.spongepowered.api.world.extent.ImmutableBlockVolume;
  */
 public class VolumeMapper {
 
+    // the source volume is mapped & placed in layers of this many blocks
+    private static final int SLAB_HEIGHT = 16;
+    // slabs are mapped in parallel on their own pool so that big pastes don't hog the shared async executor
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            VolumeMapper::newWorker,
+            null,
+            false
+    );
+    // the most slabs that may be mapped ahead of the one waiting to be placed
+    private static final int LOOKAHEAD = POOL.getParallelism() * 2;
+
     private final int angle;
-    private final double radians;
     private final boolean flipX;
     private final boolean flipY;
     private final boolean flipZ;
     private final Vector3i origin;
     private final Collection<State.Mapper> mappers;
+    private final Transform transform;
 
     public VolumeMapper(Vector3i origin, int angle, boolean x, boolean y, boolean z, Collection<State.Mapper> mappers) {
-        this.angle = angle;
-        this.radians = Math.toRadians(angle);
+        this.angle = ((angle % 360) + 360) % 360;
         this.flipX = x;
         this.flipY = y;
         this.flipZ = z;
         this.mappers = mappers;
         this.origin = origin;
+        this.transform = Transform.of(angle, x, y, z);
+    }
+
+    // whether every block of the source, once transformed, lands close enough to the paste position to be buffered
+    public boolean isInRange(ImmutableBlockVolume source) {
+        return isInRange(source.getBlockMin(), source.getBlockMax(), origin, angle);
+    }
+
+    public Runnable createTask(ImmutableBlockVolume source, Vector3i position, UUID owner, Callback callback) {
+        return new Task(source, position, owner, callback, null);
     }
 
-    public Runnable createTask(ImmutableBlockVolume source, Vector3i position, UUID owner, FutureCallback<BufferView> callback) {
-        return new Task(source, position, owner, callback);
+    // as above, additionally handing the mapped slabs to the consumer (async) once the paste has been fully mapped
+    public Runnable createTask(ImmutableBlockVolume source, Vector3i position, UUID owner, Callback callback, Consumer<MappedVolume> consumer) {
+        return new Task(source, position, owner, callback, consumer);
     }
 
-    public BufferView apply(ImmutableBlockVolume source, Vector3i position, UUID owner) {
-        Vector3i pos1 = apply(source.getBlockMin());
-        Vector3i pos2 = apply(source.getBlockMax());
-        Vector3i min = pos1.min(pos2);
-        Vector3i max = pos1.max(pos2);
-        Vector3i size = max.sub(min);
+    // maps the source volume one slab at a time, handing each to the stream as soon as it's ready
+    // slabs are mapped in parallel but are always handed over in order so that the paste still builds bottom-up
+    // if retained, returns the mapped slabs so that they can be pasted again, or null if the paste didn't finish or
+    // the volume is too tall for its slabs to be held independently of the paste position
+    public MappedVolume apply(ImmutableBlockVolume source, Vector3i position, UUID owner, BufferStream stream, boolean retain) throws InterruptedException {
+        Vector3i min = source.getBlockMin();
+        Vector3i max = source.getBlockMax();
+        int slabs = 1 + (max.getY() - min.getY()) / SLAB_HEIGHT;
+        StateTable table = StateTable.of(mappers);
 
-        int volume = size.getX() * (1 + size.getY()) * size.getZ();
+        // the range of y values relative to the paste position (flipped half-blocks can move one block further)
+        int minRelY = flipY ? -1 - (max.getY() - origin.getY()) : min.getY() - origin.getY();
+        int maxRelY = flipY ? 1 - (min.getY() - origin.getY()) : max.getY() - origin.getY();
+        retain = retain && maxRelY - minRelY < 256;
+        Vector3i base = retain ? new Vector3i(position.getX(), -minRelY, position.getZ()) : position;
+
+        List<BufferView> mapped = new ArrayList<>(retain ? slabs : 0);
+        Deque<ForkJoinTask<BufferView>> pending = new ArrayDeque<>();
+
+        try {
+            int next = 0;
+            while (!stream.isCancelled() && (next < slabs || !pending.isEmpty())) {
+                for (; next < slabs && pending.size() < LOOKAHEAD; next++) {
+                    // when flipped, start at the top of the source so that the output is still placed bottom-up
+                    int slab = flipY ? slabs - 1 - next : next;
+                    int minY = min.getY() + slab * SLAB_HEIGHT;
+                    int maxY = Math.min(max.getY(), minY + SLAB_HEIGHT - 1);
+                    pending.add(POOL.submit(() -> apply(source, table, base, owner, minY, maxY)));
+                }
+
+                BufferView view = await(pending.poll());
+                if (retain) {
+                    mapped.add(view);
+                    view = view.copyTo(owner, position, position.getY() + minRelY);
+                }
+
+                if (!stream.put(view)) {
+                    return null;
+                }
+            }
+        } finally {
+            // drop anything still queued if the paste was cancelled or failed part way
+            for (ForkJoinTask<BufferView> task : pending) {
+                task.cancel(false);
+            }
+        }
+
+        if (!retain || stream.isCancelled()) {
+            return null;
+        }
+
+        return new MappedVolume(mapped, minRelY);
+    }
+
+    private BufferView apply(ImmutableBlockVolume source, StateTable table, Vector3i position, UUID owner, int minY, int maxY) {
+        Vector3i min = source.getBlockMin();
+        Vector3i max = source.getBlockMax();
+        Vector3i size = max.sub(min).add(Vector3i.ONE);
+
+        int volume = size.getX() * (1 + maxY - minY) * size.getZ();
         BufferBuilder buffer = new BufferBuilder(owner, position, volume);
 
+        // runs of the same state are common so remember the last lookup
+        BlockState last = null;
+        BlockState mapped = null;
+        int offset = 0;
+
         // can't use block-calculator off the main thread!
-        for (int y = source.getBlockMin().getY(); y <= source.getBlockMax().getY(); y++) {
-            for (int z = source.getBlockMin().getZ(); z <= source.getBlockMax().getZ(); z++) {
-                for (int x = source.getBlockMin().getX(); x <= source.getBlockMax().getX(); x++) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
                     BlockState state = source.getBlock(x, y, z);
+                    if (state != last) {
+                        int ordinal = table.getOrdinal(state);
+                        if (ordinal != -1) {
+                            mapped = table.map(ordinal);
+                            offset = table.getFlipYOffset(ordinal);
+                        } else {
+                            mapped = table.apply(state);
+                            offset = table.getFlipYOffset(mapped);
+                        }
+                        last = state;
+                    }
                     int relX = x - origin.getX();
                     int relY = y - origin.getY();
                     int relZ = z - origin.getZ();
-                    visit(state, relX, relY, relZ, buffer);
+                    visit(mapped, offset, relX, relY, relZ, buffer);
                 }
             }
         }
@@ -63,66 +161,72 @@ public class VolumeMapper {
         return buffer.getView();
     }
 
-    private void visit(BlockState state, int x, int y, int z, BufferBuilder buffer) {
-        for (State.Mapper mapper : mappers) {
-            state = mapper.map(state);
-        }
+    private void visit(BlockState state, int flipYOffset, int x, int y, int z, BufferBuilder buffer) {
+        int rx = transform.getX(x, z);
+        int ry = transform.getY(y, flipYOffset);
+        int rz = transform.getZ(x, z);
 
-        if (flipY) {
-            y = -y;
-            y += getFlipYOffset(state);
+        if (transform.isSheared()) {
+            rx = transform.shearX(rx, rz);
+            rz = transform.shearZ(rx, rz);
+            rx = transform.shearX(rx, rz);
         }
 
-        if (flipX) {
-            x = -x;
-        }
+        buffer.addRelative(state, rx, ry, rz);
+    }
 
-        if (flipZ) {
-            z = -z;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
         }
-
-        if (angle != 0) {
-            int rx = rotateY(x, z, radians, -1);
-            int rz = rotateY(z, x, radians, 1);
-            x = rx;
-            z = rz;
+        if (o == null || getClass() != o.getClass()) {
+            return false;
         }
-
-        buffer.addRelative(state, x, y, z);
+        VolumeMapper that = (VolumeMapper) o;
+        return angle == that.angle
+                && flipX == that.flipX
+                && flipY == that.flipY
+                && flipZ == that.flipZ
+                && origin.equals(that.origin)
+                && mappers.equals(that.mappers);
     }
 
-    public Vector3i apply(Vector3i pos) {
-        int x = pos.getX(), y = pos.getY(), z = pos.getZ();
-
-        if (angle != 0) {
-            int rx = rotateY(x, z, radians, -1);
-            int rz = rotateY(z, x, radians, 1);
-            x = rx;
-            z = rz;
-        }
-
-        return new Vector3i(x, y, z);
+    @Override
+    public int hashCode() {
+        return Objects.hash(angle, flipX, flipY, flipZ, origin, mappers);
     }
 
-    private static int rotateY(int a, int b, double rads, int sign) {
-        return (int) Math.round(a * Math.cos(rads) + (sign * b) * Math.sin(rads));
+    // quarter turns & flips only swap/negate the x & z offsets from the origin, other angles can reach anywhere within
+    // the radius of the furthest corner (plus a little rounding from the shears)
+    public static boolean isInRange(Vector3i min, Vector3i max, Vector3i origin, int angle) {
+        long dx = Math.max(Math.abs((long) min.getX() - origin.getX()), Math.abs((long) max.getX() - origin.getX()));
+        long dz = Math.max(Math.abs((long) min.getZ() - origin.getZ()), Math.abs((long) max.getZ() - origin.getZ()));
+        if (Transform.isQuarterTurn(angle)) {
+            return Packing.contains(Math.max(dx, dz));
+        }
+        return Packing.contains((long) Math.ceil(Math.hypot(dx, dz)) + 2);
     }
 
-    private static int getFlipYOffset(BlockState state) {
-        Optional<BlockTrait<?>> trait = state.getTrait("half");
-        if (trait.isPresent()) {
-            Optional<?> value = state.getTraitValue(trait.get());
-            if (value.isPresent()) {
-                String half = value.get().toString();
-                if (half.equals("upper")) {
-                    return 1;
-                }
-                if (half.equals("lower")) {
-                    return -1;
-                }
+    private static BufferView await(ForkJoinTask<BufferView> task) throws InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
         }
-        return 0;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("copypasta-mapper-" + thread.getPoolIndex());
+        return thread;
     }
 
     private class Task implements Runnable {
@@ -130,20 +234,26 @@ public class VolumeMapper {
         private final UUID owner;
         private final Vector3i position;
         private final ImmutableBlockVolume source;
-        private final FutureCallback<BufferView> callback;
+        private final Callback callback;
+        private final Consumer<MappedVolume> consumer;
 
-        private Task(ImmutableBlockVolume source, Vector3i position, UUID owner, FutureCallback<BufferView> callback) {
+        private Task(ImmutableBlockVolume source, Vector3i position, UUID owner, Callback callback, Consumer<MappedVolume> consumer) {
             this.owner = owner;
             this.source = source;
             this.position = position;
             this.callback = callback;
+            this.consumer = consumer;
         }
 
         @Override
         public void run() {
             try {
-                BufferView transformed = apply(source, position, owner);
-                callback.onSuccess(transformed);
+                BufferStream stream = callback.open();
+                MappedVolume mapped = apply(source, position, owner, stream, consumer != null);
+                stream.complete();
+                if (mapped != null) {
+                    consumer.accept(mapped);
+                }
             } catch (Throwable t) {
                 callback.onFailure(t);
             }
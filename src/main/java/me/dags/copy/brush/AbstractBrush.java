@@ -1,14 +1,12 @@
 package me.dags.copy.brush;
 
 import com.flowpowered.math.vector.Vector3i;
-import java.util.LinkedList;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.PlayerData;
 import me.dags.copy.PlayerManager;
 import me.dags.copy.brush.option.Options;
 import me.dags.copy.operation.UndoOperation;
 import me.dags.copy.util.fmt;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.entity.living.player.Player;
 
 /**
@@ -57,7 +55,7 @@ public abstract class AbstractBrush implements Brush {
 
         if (history.hasNext()) {
             data.setOperating(true);
-            LinkedList<BlockSnapshot> record = history.popRecord();
+            HistoryRecord record = history.popRecord();
             UndoOperation operation = new UndoOperation(record, player.getUniqueId(), history);
             CopyPasta.getInstance().getOperationManager().queueOperation(operation);
         } else {
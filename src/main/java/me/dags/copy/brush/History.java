@@ -1,37 +1,56 @@
 package me.dags.copy.brush;
 
+import java.util.Iterator;
 import java.util.LinkedList;
-import org.spongepowered.api.block.BlockSnapshot;
+import java.util.UUID;
+import org.spongepowered.api.world.World;
 
 /**
  * @author dags <dags@dags.me>
  */
 public class History {
 
-    private final LinkedList<LinkedList<BlockSnapshot>> history = new LinkedList<>();
+    private final LinkedList<HistoryRecord> history = new LinkedList<>();
     private final int size;
 
     public History(int size) {
         this.size = size;
     }
 
-    public LinkedList<BlockSnapshot> popRecord() {
-        return history.removeLast();
+    public HistoryRecord popRecord() {
+        HistoryRecord record = history.removeLast();
+        HistoryAccountant.getInstance().remove(record);
+        record.take();
+        return record;
     }
 
     public boolean hasNext() {
         return !history.isEmpty();
     }
 
-    public LinkedList<BlockSnapshot> nextRecord() {
-        LinkedList<BlockSnapshot> list = new LinkedList<>();
-        if (history.size() < size) {
-            history.add(list);
-        } else {
-            history.removeFirst();
-            history.add(list);
+    public HistoryRecord nextRecord(UUID owner, World world) {
+        HistoryRecord record = new HistoryRecord(world);
+        if (history.size() >= size && !history.isEmpty()) {
+            discard(history.removeFirst());
+        }
+        history.add(record);
+        HistoryAccountant.getInstance().register(owner, this, record);
+        spill();
+        return record;
+    }
+
+    // called once an operation has finished writing to the record
+    public void complete(HistoryRecord record) {
+        record.complete();
+        HistoryAccountant.getInstance().update(record);
+        spill();
+    }
+
+    // the record has been dropped by the HistoryAccountant
+    void evict(HistoryRecord record) {
+        if (history.remove(record)) {
+            HistoryStore.getInstance().discard(record);
         }
-        return list;
     }
 
     public int getSize() {
@@ -41,4 +60,21 @@ public class History {
     public int getMax() {
         return size;
     }
+
+    private void discard(HistoryRecord record) {
+        HistoryAccountant.getInstance().remove(record);
+        HistoryStore.getInstance().discard(record);
+    }
+
+    // moves all but the newest few (completed) records out of memory
+    private void spill() {
+        int keep = HistoryStore.getInstance().getMemoryRecords();
+        Iterator<HistoryRecord> iterator = history.iterator();
+        for (int i = history.size() - keep; i > 0 && iterator.hasNext(); i--) {
+            HistoryRecord record = iterator.next();
+            if (record.canSpill()) {
+                HistoryStore.getInstance().spill(record);
+            }
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package me.dags.copy.brush;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import me.dags.config.Node;
+
+/**
+ * Keeps a server-wide tally of the (estimated) bytes that every History holds on the heap. Once the total exceeds the
+ * configured ceiling the oldest resident records, regardless of who they belong to, are spilled to disk (or dropped if
+ * that isn't possible). Records already on disk don't count towards the total.
+ *
+ * Main thread only.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class HistoryAccountant {
+
+    private static final HistoryAccountant INSTANCE = new HistoryAccountant();
+
+    // insertion ordered, so iteration starts at the oldest record
+    private final Map<HistoryRecord, Entry> records = new LinkedHashMap<>();
+
+    private long maxBytes = 256L << 20;
+    private long bytes = 0L;
+
+    private HistoryAccountant() {}
+
+    public void configure(Node node) {
+        maxBytes = Math.max(1L, node.get("max_megabytes", 256)) << 20;
+        enforce();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Map<UUID, Long> getUsage() {
+        Map<UUID, Long> usage = new HashMap<>();
+        for (Entry entry : records.values()) {
+            usage.merge(entry.owner, entry.bytes, Long::sum);
+        }
+        return usage;
+    }
+
+    void register(UUID owner, History history, HistoryRecord record) {
+        records.put(record, new Entry(owner, history));
+    }
+
+    // the record has completed or been spilled, so its resident size has changed
+    void update(HistoryRecord record) {
+        Entry entry = records.get(record);
+        if (entry != null) {
+            long size = record.getResidentBytes();
+            bytes += size - entry.bytes;
+            entry.bytes = size;
+            enforce();
+        }
+    }
+
+    // a spill has finished (main thread). if one requested by enforce() failed, drop the record instead
+    void spilled(HistoryRecord record, boolean success) {
+        Entry entry = records.get(record);
+        if (entry == null) {
+            return;
+        }
+
+        boolean requested = entry.spilling;
+        entry.spilling = false;
+        if (!success && requested) {
+            records.remove(record);
+            bytes -= entry.bytes;
+            entry.history.evict(record);
+            return;
+        }
+
+        update(record);
+    }
+
+    void remove(HistoryRecord record) {
+        Entry entry = records.remove(record);
+        if (entry != null) {
+            bytes -= entry.bytes;
+        }
+    }
+
+    // the owner's brushes have gone (ie they logged out) so their records can never be undone
+    public void release(UUID owner) {
+        Iterator<Map.Entry<HistoryRecord, Entry>> iterator = records.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<HistoryRecord, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if (entry.owner.equals(owner)) {
+                iterator.remove();
+                bytes -= entry.bytes;
+                entry.history.evict(next.getKey());
+            }
+        }
+    }
+
+    private void enforce() {
+        // bytes already on their way to disk
+        long resident = bytes;
+        for (Entry entry : records.values()) {
+            if (entry.spilling) {
+                resident -= entry.bytes;
+            }
+        }
+
+        Iterator<Map.Entry<HistoryRecord, Entry>> iterator = records.entrySet().iterator();
+        while (resident > maxBytes && iterator.hasNext()) {
+            Map.Entry<HistoryRecord, Entry> next = iterator.next();
+            HistoryRecord record = next.getKey();
+            Entry entry = next.getValue();
+
+            // on disk, still being written to (no size yet), or already being spilled
+            if (entry.bytes == 0L || entry.spilling) {
+                continue;
+            }
+
+            resident -= entry.bytes;
+            if (record.canSpill()) {
+                entry.spilling = true;
+                HistoryStore.getInstance().spill(record);
+            } else {
+                iterator.remove();
+                bytes -= entry.bytes;
+                entry.history.evict(record);
+            }
+        }
+    }
+
+    public static HistoryAccountant getInstance() {
+        return INSTANCE;
+    }
+
+    private static class Entry {
+
+        private final UUID owner;
+        private final History history;
+        private long bytes = 0L;
+        private boolean spilling = false;
+
+        private Entry(UUID owner, History history) {
+            this.owner = owner;
+            this.history = history;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package me.dags.copy.brush;
+
+import com.flowpowered.math.vector.Vector3i;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import me.dags.copy.util.BufferInput;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.persistence.DataFormats;
+import org.spongepowered.api.world.BlockChangeFlag;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+/**
+ * The blocks replaced by a single operation. Each block is stored as a packed position and an index into a small
+ * palette of the states that were replaced. Only blocks that had a tile entity are kept as full BlockSnapshots.
+ *
+ * Once complete, older records can be spilled to a compressed file and loaded back (via a memory-mapped read)
+ * when they are needed for an undo.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class HistoryRecord {
+
+    private static final int MAX_PALETTE = 1 << 16;
+
+    private final WorldProperties world;
+
+    private List<BlockState> palette = new ArrayList<>();
+    private Map<BlockState, Integer> paletteIds = new HashMap<>();
+    private Map<Integer, BlockSnapshot> tiles = new HashMap<>();
+    private long[] positions = new long[64];
+    private short[] states = new short[64];
+    private int size = 0;
+
+    private Path file = null;
+    private long bytes = 0L;
+    private boolean complete = false;
+    private boolean taken = false;
+    private boolean spilling = false;
+
+    private BlockSnapshot.Builder builder;
+
+    public HistoryRecord(World world) {
+        this.world = world.getProperties();
+    }
+
+    public UUID getWorldId() {
+        return world.getUniqueId();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // records the block currently at the position, before it gets replaced
+    public void add(World world, int x, int y, int z) {
+        if (size == positions.length) {
+            int capacity = positions.length + (positions.length >> 1);
+            positions = Arrays.copyOf(positions, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+
+        BlockState state = world.getBlock(x, y, z);
+        Integer id = paletteIds.get(state);
+        if (id == null && palette.size() < MAX_PALETTE) {
+            id = palette.size();
+            palette.add(state);
+            paletteIds.put(state, id);
+        }
+
+        // tile entity data (or a state that doesn't fit in the palette) needs the full snapshot
+        if (id == null || world.getTileEntity(x, y, z).isPresent()) {
+            tiles.put(size, world.createSnapshot(x, y, z));
+            id = 0;
+        }
+
+        positions[size] = pack(x, y, z);
+        states[size] = (short) id.intValue();
+        size++;
+    }
+
+    public Vector3i getPosition(int index) {
+        long packed = positions[index];
+        return new Vector3i(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    public BlockState getState(int index) {
+        BlockSnapshot tile = tiles.get(index);
+        return tile != null ? tile.getState() : palette.get(states[index] & 0xFFFF);
+    }
+
+    // main thread only, the record must not be spilled
+    public void restore(int index) {
+        BlockSnapshot snapshot = tiles.get(index);
+        if (snapshot == null) {
+            if (builder == null) {
+                builder = BlockSnapshot.builder().world(world);
+            }
+            snapshot = builder.position(getPosition(index)).blockState(getState(index)).build();
+        }
+        snapshot.restore(true, BlockChangeFlag.NONE);
+    }
+
+    // rough size of the record's data while in memory
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    // as above, or zero while the record's data is on disk
+    public synchronized long getResidentBytes() {
+        return file == null ? bytes : 0L;
+    }
+
+    // the operation writing to this record has finished
+    synchronized void complete() {
+        complete = true;
+        bytes = 64L + size * 10L + palette.size() * 32L + tiles.size() * 1024L;
+    }
+
+    synchronized boolean canSpill() {
+        return complete && !taken && !spilling && file == null;
+    }
+
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    // the record has been removed from its history to be undone, so it shouldn't be spilled any more
+    synchronized void take() {
+        taken = true;
+    }
+
+    // the record has been dropped from its history
+    synchronized void discard() throws IOException {
+        taken = true;
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+
+    // the data is written out without holding the lock so that the main thread is never stuck behind the disk.
+    // returns true if the record was spilled, false if it wasn't in a state to be (or was taken while writing)
+    boolean spill(Path file) throws IOException {
+        List<BlockState> palette;
+        Map<Integer, BlockSnapshot> tiles;
+        long[] positions;
+        short[] states;
+        int size;
+
+        synchronized (this) {
+            if (!canSpill()) {
+                return false;
+            }
+            // complete, so nothing writes to the data any more
+            spilling = true;
+            palette = this.palette;
+            tiles = this.tiles;
+            positions = this.positions;
+            states = this.states;
+            size = this.size;
+        }
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(size);
+                out.writeInt(palette.size());
+                for (BlockState state : palette) {
+                    out.writeUTF(state.getId());
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(positions[i]);
+                    out.writeShort(states[i]);
+                }
+                out.writeInt(tiles.size());
+                for (Map.Entry<Integer, BlockSnapshot> entry : tiles.entrySet()) {
+                    ByteArrayOutputStream data = new ByteArrayOutputStream();
+                    DataFormats.NBT.writeTo(data, entry.getValue().toContainer());
+                    out.writeInt(entry.getKey());
+                    out.writeInt(data.size());
+                    data.writeTo(out);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            synchronized (this) {
+                spilling = false;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            spilling = false;
+            // taken (to be undone) or discarded while the file was being written, keep the data in memory
+            if (taken) {
+                Files.deleteIfExists(file);
+                return false;
+            }
+
+            this.file = file;
+            this.palette = null;
+            this.paletteIds = null;
+            this.tiles = null;
+            this.positions = null;
+            this.states = null;
+            return true;
+        }
+    }
+
+    // reads the record back in, the file is only removed once it has been read successfully. as with spill, the
+    // read happens without holding the lock and the lock is only taken to swap the data in
+    void load() throws IOException {
+        Path file;
+        synchronized (this) {
+            file = this.file;
+        }
+        if (file == null) {
+            return;
+        }
+
+        List<BlockState> palette = new ArrayList<>();
+        Map<BlockState, Integer> paletteIds = new HashMap<>();
+        Map<Integer, BlockSnapshot> tiles = new HashMap<>();
+        long[] positions;
+        short[] states;
+        int size;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferInput(buffer)));
+
+            size = in.readInt();
+            int paletteSize = in.readInt();
+            for (int i = 0; i < paletteSize; i++) {
+                String id = in.readUTF();
+                BlockState state = Sponge.getRegistry().getType(BlockState.class, id).orElse(BlockTypes.AIR.getDefaultState());
+                palette.add(state);
+                paletteIds.putIfAbsent(state, i);
+            }
+
+            positions = new long[size];
+            states = new short[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = in.readLong();
+                states[i] = in.readShort();
+            }
+
+            int tileCount = in.readInt();
+            for (int i = 0; i < tileCount; i++) {
+                int index = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                DataContainer container = DataFormats.NBT.readFrom(new ByteArrayInputStream(data));
+                Sponge.getDataManager().deserialize(BlockSnapshot.class, container).ifPresent(s -> tiles.put(index, s));
+            }
+        }
+
+        synchronized (this) {
+            // discarded or loaded by someone else in the meantime
+            if (this.file != file) {
+                return;
+            }
+            this.file = null;
+            this.palette = palette;
+            this.paletteIds = paletteIds;
+            this.tiles = tiles;
+            this.positions = positions;
+            this.states = states;
+            this.size = size;
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed & 0xFFFL);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) ((packed << 26) >> 38);
+    }
+}
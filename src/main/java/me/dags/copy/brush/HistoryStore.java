@@ -0,0 +1,120 @@
+package me.dags.copy.brush;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import me.dags.config.Node;
+import me.dags.copy.CopyPasta;
+import me.dags.copy.util.Utils;
+
+/**
+ * Moves completed history records between the heap and compressed files in the plugin's 'history' directory.
+ * Only the newest few records of each History are kept in memory.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class HistoryStore {
+
+    private static final HistoryStore INSTANCE = new HistoryStore();
+
+    private int depth = 32;
+    private int memory = 2;
+
+    private HistoryStore() {}
+
+    public void configure(Node node) {
+        depth = Math.max(1, node.get("undo_steps", 32));
+        memory = Math.max(1, node.get("records_in_memory", 2));
+    }
+
+    // the number of undo steps a brush keeps
+    public int getDepth() {
+        return depth;
+    }
+
+    // the number of (newest) records a History keeps on the heap
+    public int getMemoryRecords() {
+        return memory;
+    }
+
+    // files left over from a previous run can never be loaded
+    public void clean() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getDir())) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the HistoryAccountant is told (on the main thread) once the record is on disk, or if it couldn't be written
+    void spill(HistoryRecord record) {
+        submit(() -> {
+            boolean success = true;
+            try {
+                record.spill(getDir().resolve(UUID.randomUUID() + ".history"));
+            } catch (IOException e) {
+                e.printStackTrace();
+                success = false;
+            }
+            boolean result = success;
+            sync(() -> HistoryAccountant.getInstance().spilled(record, result));
+        });
+    }
+
+    // the callback is told whether the record was read back in. if not, its file is left in place. the record has
+    // already been taken from its history (and the accountant) to be undone, so its bytes aren't counted again
+    public void load(HistoryRecord record, Consumer<Boolean> callback) {
+        submit(() -> {
+            boolean loaded = false;
+            try {
+                record.load();
+                loaded = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                callback.accept(loaded);
+            }
+        });
+    }
+
+    void discard(HistoryRecord record) {
+        submit(() -> {
+            try {
+                record.discard();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private Path getDir() {
+        return Utils.getDir(CopyPasta.getInstance().getConfigDir(), "history");
+    }
+
+    private static void sync(Runnable task) {
+        try {
+            CopyPasta.getInstance().submitSync(task);
+        } catch (IllegalStateException e) {
+            // shutting down, the accountant is no longer needed
+        }
+    }
+
+    private static void submit(Runnable task) {
+        try {
+            CopyPasta.getInstance().submitAsync(task);
+        } catch (RejectedExecutionException e) {
+            // shutting down, run it here instead
+            task.run();
+        }
+    }
+
+    public static HistoryStore getInstance() {
+        return INSTANCE;
+    }
+}
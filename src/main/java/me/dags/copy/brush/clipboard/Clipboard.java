@@ -1,15 +1,20 @@
 package me.dags.copy.brush.clipboard;
 
 import com.flowpowered.math.vector.Vector3i;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import me.dags.copy.CopyPasta;
+import me.dags.copy.PlayerData;
+import me.dags.copy.PlayerManager;
 import me.dags.copy.block.property.Facing;
+import me.dags.copy.block.volume.MappedVolume;
 import me.dags.copy.block.volume.VolumeMapper;
 import me.dags.copy.brush.History;
+import me.dags.copy.operation.CaptureOperation;
 import me.dags.copy.operation.callback.Callback;
 import me.dags.copy.operation.modifier.Filter;
 import me.dags.copy.operation.modifier.Translate;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.world.extent.BlockVolume;
 import org.spongepowered.api.world.extent.ImmutableBlockVolume;
 
 /**
@@ -17,8 +22,10 @@ import org.spongepowered.api.world.extent.ImmutableBlockVolume;
  */
 public class Clipboard {
 
+    private static final AtomicLong IDS = new AtomicLong();
     private static final Clipboard EMPTY = new Clipboard();
 
+    private final long id = IDS.incrementAndGet();
     private final ImmutableBlockVolume source;
     private final Facing horizontalFacing;
     private final Facing verticalFacing;
@@ -42,6 +49,20 @@ public class Clipboard {
         return this != EMPTY;
     }
 
+    // shared clipboards (ie loaded schematics) may be pasted by several players so are left for the cache to expire
+    public boolean isShared() {
+        return false;
+    }
+
+    // identifies the clipboard without holding a reference to it (or its source volume)
+    public long getId() {
+        return id;
+    }
+
+    public ImmutableBlockVolume getSource() {
+        return source;
+    }
+
     public Vector3i getOrigin() {
         return origin;
     }
@@ -57,7 +78,17 @@ public class Clipboard {
     public void paste(Player player, History history, Vector3i position, VolumeMapper volumeMapper, Filter from, Filter to, Translate translate) {
         if (isPresent()) {
             Callback callback = Callback.of(player, history, from, to, translate);
-            Runnable task = volumeMapper.createTask(source, position, player.getUniqueId(), callback);
+            ClipboardCache cache = ClipboardCache.getInstance();
+            MappedVolume mapped = cache.get(this, volumeMapper);
+            Runnable task;
+            if (mapped != null) {
+                task = mapped.createTask(position, player.getUniqueId(), callback);
+            } else if (cache.canHold(MappedVolume.estimateBytes(source))) {
+                task = volumeMapper.createTask(source, position, player.getUniqueId(), callback, volume -> cache.put(this, volumeMapper, volume));
+            } else {
+                // too big to cache, so don't hold on to the slabs once they've been placed
+                task = volumeMapper.createTask(source, position, player.getUniqueId(), callback);
+            }
             CopyPasta.getInstance().submitAsync(task);
         }
     }
@@ -66,11 +97,24 @@ public class Clipboard {
         return EMPTY;
     }
 
-    public static Clipboard of(Player player, Vector3i min, Vector3i max, Vector3i origin) {
+    // copies the region over as many ticks as it takes, handing the clipboard to the callback (on the main thread)
+    // once it has been fully read & packed. returns false if the copy couldn't be queued
+    public static boolean capture(Player player, Vector3i min, Vector3i max, Vector3i origin, Consumer<Clipboard> callback) {
         Facing verticalFacing = Facing.getVertical(player);
         Facing horizontalFacing = Facing.getHorizontal(player);
-        BlockVolume backing = player.getWorld().getBlockView(min, max).getRelativeBlockView();
-        return new Clipboard(backing.getImmutableBlockCopy(), origin.sub(min), horizontalFacing, verticalFacing);
+        Vector3i offset = origin.sub(min);
+
+        CaptureOperation operation = new CaptureOperation(player.getWorld(), player.getUniqueId(), min, max, volume -> {
+            callback.accept(new Clipboard(volume, offset, horizontalFacing, verticalFacing));
+        });
+
+        PlayerData data = PlayerManager.getInstance().must(player);
+        data.setOperating(true);
+        if (!CopyPasta.getInstance().getOperationManager().queueOperation(operation)) {
+            data.setOperating(false);
+            return false;
+        }
+        return true;
     }
 
     public static Clipboard stencil(Player player, ImmutableBlockVolume volume, Vector3i origin) {
@@ -9,11 +9,14 @@ import me.dags.copy.block.Mappers;
 import me.dags.copy.block.property.Axis;
 import me.dags.copy.block.property.Facing;
 import me.dags.copy.block.state.State;
+import me.dags.copy.block.volume.Transform;
 import me.dags.copy.block.volume.VolumeMapper;
 import me.dags.copy.brush.AbstractBrush;
 import me.dags.copy.brush.Action;
 import me.dags.copy.brush.Aliases;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryStore;
+import me.dags.copy.brush.option.Checks;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.value.Flip;
 import me.dags.copy.brush.option.value.MapperSet;
@@ -35,6 +38,7 @@ public class ClipboardBrush extends AbstractBrush {
     public static final Option<Flip> FLIP = Flip.OPTION;
     public static final Option<Boolean> AUTO_ROTATE = Option.of("rotate.auto", true);
     public static final Option<Boolean> RANDOM_ROTATE = Option.of("rotate.random", false);
+    public static final Option<Integer> ROTATE_ANGLE = Option.of("rotate.angle", 0, Checks.range(0, 359));
     public static final Option<Boolean> PASTE_AIR = Option.of("air.paste", false);
     public static final Option<Boolean> REPLACE_AIR = Option.of("air.replace", false);
     public static final Option<Vector3i> PASTE_OFFSET = Option.of("offset", Vector3i.ZERO);
@@ -45,21 +49,26 @@ public class ClipboardBrush extends AbstractBrush {
     private Clipboard clipboard = Clipboard.empty();
 
     public ClipboardBrush() {
-        super(5);
+        super(HistoryStore.getInstance().getDepth());
         setOption(RANGE, 5);
     }
 
     public void commitSelection(Player player, Vector3i min, Vector3i max, Vector3i origin, int size) {
-        Clipboard clipboard = Clipboard.of(player, min, max, origin);
-        setClipboard(clipboard);
-        fmt.info("Copied ").stress(size).info(" blocks").tell(player);
+        boolean queued = Clipboard.capture(player, min, max, origin, clipboard -> {
+            replaceClipboard(clipboard);
+            fmt.info("Copied ").stress(size).info(" blocks").tell(player);
+        });
+
+        if (!queued) {
+            fmt.error("Unable to copy the selection right now").tell(player);
+        }
     }
 
     @Override
     public void primary(Player player, Vector3i pos, Action action) {
         if (clipboard.isPresent()) {
             if (action == Action.SECONDARY) {
-                setClipboard(Clipboard.empty());
+                replaceClipboard(Clipboard.empty());
                 fmt.info("Cleared clipboard").tell(player);
                 return;
             }
@@ -85,6 +94,12 @@ public class ClipboardBrush extends AbstractBrush {
     @Override
     public void apply(Player player, Vector3i pos, History history) {
         if (clipboard.isPresent()) {
+            VolumeMapper mapper = getMapper(clipboard, player);
+            if (!mapper.isInRange(clipboard.getSource())) {
+                fmt.error("The clipboard reaches too far from its origin to paste at this angle").tell(CopyPasta.NOTICE_TYPE, player);
+                return;
+            }
+
             PlayerManager.getInstance().must(player).setOperating(true);
             Vector3i offset = getOption(PASTE_OFFSET);
             Vector3i position = pos.add(offset);
@@ -92,7 +107,6 @@ public class ClipboardBrush extends AbstractBrush {
             Filter from = Filter.replaceAir(getOption(REPLACE_AIR));
             Filter to = Filter.pasteAir(getOption(PASTE_AIR));
             Translate translate = mode.getModifier(pos, offset);
-            VolumeMapper mapper = getMapper(clipboard, player);
             clipboard.paste(player, history, position, mapper, from, to, translate);
         }
     }
@@ -101,6 +115,16 @@ public class ClipboardBrush extends AbstractBrush {
         this.clipboard = clipboard;
     }
 
+    // as above, but the current clipboard is being thrown away. if it was the player's own its cached orientations
+    // can never be used again, so they're dropped straight away
+    protected void replaceClipboard(Clipboard clipboard) {
+        Clipboard previous = this.clipboard;
+        if (previous != clipboard && previous.isPresent() && !previous.isShared()) {
+            ClipboardCache.getInstance().invalidate(previous);
+        }
+        this.clipboard = clipboard;
+    }
+
     private VolumeMapper getMapper(Clipboard clipboard, Player player) {
         Facing phFacing = Facing.getHorizontal(player);
         Facing pvFacing = Facing.getVertical(player);
@@ -120,6 +144,9 @@ public class ClipboardBrush extends AbstractBrush {
             angle = turns * 90;
         }
 
+        // any extra rotation on top of the auto/random quarter turns
+        angle = (angle + getOption(ROTATE_ANGLE)) % 360;
+
         if (flip.auto() && pvFacing != Facing.none && clipboard.getVerticalFacing() != Facing.none) {
             flipY = pvFacing != clipboard.getVerticalFacing();
         }
@@ -133,8 +160,10 @@ public class ClipboardBrush extends AbstractBrush {
         ImmutableList.Builder<State.Mapper> mappers = ImmutableList.builder();
         mappers.addAll(mapperSet);
 
-        if (angle != 0) {
-            mappers.add(Mappers.getRotationY(angle));
+        // block states can only face in quarter turns so use whichever is closest to the angle
+        int quarter = Transform.getQuarterTurn(angle);
+        if (quarter != 0) {
+            mappers.add(Mappers.getRotationY(quarter));
         }
 
         if (flipX) {
@@ -0,0 +1,110 @@
+package me.dags.copy.brush.clipboard;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.concurrent.TimeUnit;
+import me.dags.config.Node;
+import me.dags.copy.block.volume.MappedVolume;
+import me.dags.copy.block.volume.VolumeMapper;
+
+/**
+ * Holds the transformed slabs of recently pasted clipboards, keyed by the clipboard's id and the VolumeMapper
+ * (rotation, flips & state mappers) used to paste it, so that repeat pastes of the same orientation skip the mapping
+ * step and only need their positions moving. Bounded by the (estimated) bytes held across all clipboards.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class ClipboardCache {
+
+    private static final ClipboardCache INSTANCE = new ClipboardCache();
+
+    private volatile long maxBytes = 64L << 20;
+    private volatile Cache<Key, MappedVolume> cache = build(maxBytes);
+
+    private ClipboardCache() {}
+
+    public void configure(Node node) {
+        long maxBytes = Math.max(1L, node.get("cache_megabytes", 64)) << 20;
+        if (maxBytes != this.maxBytes) {
+            this.maxBytes = maxBytes;
+            this.cache = build(maxBytes);
+        }
+    }
+
+    public MappedVolume get(Clipboard clipboard, VolumeMapper mapper) {
+        return cache.getIfPresent(new Key(clipboard.getId(), mapper));
+    }
+
+    // whether a mapped volume of the given size would fit in the cache at all
+    public boolean canHold(long bytes) {
+        return bytes <= maxBytes;
+    }
+
+    public void put(Clipboard clipboard, VolumeMapper mapper, MappedVolume volume) {
+        cache.put(new Key(clipboard.getId(), mapper), volume);
+    }
+
+    // drops every orientation of the clipboard, called when it's replaced
+    public void invalidate(Clipboard clipboard) {
+        cache.asMap().keySet().removeIf(key -> key.clipboard == clipboard.getId());
+    }
+
+    public long getBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public static ClipboardCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static Cache<Key, MappedVolume> build(long maxBytes) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, MappedVolume volume) -> (int) Math.min(Integer.MAX_VALUE, volume.getBytes()))
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    // the key only holds the clipboard's id so that the cache never keeps a clipboard's (unweighed) source alive
+    private static class Key {
+
+        private final long clipboard;
+        private final VolumeMapper mapper;
+
+        private Key(long clipboard, VolumeMapper mapper) {
+            this.clipboard = clipboard;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return clipboard == key.clipboard && mapper.equals(key.mapper);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(clipboard) + mapper.hashCode();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.flowpowered.math.vector.Vector3i;
 import java.util.Optional;
 import me.dags.commandbus.fmt.Formatter;
 import me.dags.copy.CopyPasta;
+import me.dags.copy.PlayerManager;
+import me.dags.copy.block.volume.VolumeMapper;
 import me.dags.copy.brush.AbstractBrush;
 import me.dags.copy.brush.Action;
 import me.dags.copy.brush.History;
@@ -22,7 +24,8 @@ import org.spongepowered.api.service.permission.PermissionService;
  */
 public class SelectorBrush extends AbstractBrush {
 
-    private static final int LIMIT = 50000;
+    // selections are copied a section at a time across ticks, so the limit is about clipboard memory, not lag
+    private static final int LIMIT = 2_000_000;
     private static final BlockState POS1 = Sponge.getRegistry()
             .getType(BlockState.class, "minecraft:stained_glass[color=orange]")
             .orElse(BlockTypes.EMERALD_BLOCK.getDefaultState());
@@ -75,15 +78,25 @@ public class SelectorBrush extends AbstractBrush {
                 return;
             }
 
-            int size = getSize(pos1, pos2);
-            int limit = getLimit(player);
+            if (PlayerManager.getInstance().must(player).isOperating()) {
+                fmt.error("An operation is already in progress").tell(CopyPasta.NOTICE_TYPE, player);
+                return;
+            }
+
+            long size = getSize(pos1, pos2);
+            int limit = getLimit(player, LIMIT);
+
+            Vector3i min = pos1.min(pos2);
+            Vector3i max = pos1.max(pos2);
+            if (!VolumeMapper.isInRange(min, max, pos, 0)) {
+                fmt.error("Selection reaches too far from the origin, pick an origin closer to its centre").tell(player);
+                return;
+            }
 
             if (size <= limit) {
                 resetPos1Marker(player);
                 resetPos2Marker(player);
-                Vector3i min = pos1.min(pos2);
-                Vector3i max = pos1.max(pos2);
-                clipboardBrush.commitSelection(player, min, max, pos, size);
+                clipboardBrush.commitSelection(player, min, max, pos, (int) size);
             } else {
                 fmt.error("Selection size is too large: ").stress(size).info(" / ").stress(limit).tell(player);
             }
@@ -135,16 +148,18 @@ public class SelectorBrush extends AbstractBrush {
         f.tell(player);
     }
 
-    private static int getSize(Vector3i pos1, Vector3i pos2) {
+    // as a long, large selections can overflow an int
+    private static long getSize(Vector3i pos1, Vector3i pos2) {
         Vector3i min = pos1.min(pos2);
         Vector3i max = pos1.max(pos2);
-        int lx = max.getX() - min.getX() + 1;
+        long lx = max.getX() - min.getX() + 1;
         int ly = max.getY() - min.getY() + 1;
         int lz = max.getZ() - min.getZ() + 1;
         return lx * ly * lz;
     }
 
-    private static int getLimit(Player player) {
+    // the player's 'copypasta.limit' option if they have one, otherwise the given default
+    public static int getLimit(Player player, int defaultLimit) {
         Optional<?> permissionService = Sponge.getServiceManager().getRegistration(PermissionService.class)
                 .map(ProviderRegistration::getPlugin)
                 .map(PluginContainer::getId)
@@ -161,6 +176,6 @@ public class SelectorBrush extends AbstractBrush {
             }
         }
 
-        return LIMIT;
+        return defaultLimit;
     }
 }
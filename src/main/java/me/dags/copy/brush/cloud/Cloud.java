@@ -82,7 +82,7 @@ public class Cloud {
     public BufferView apply(Vector3i pos, UUID owner) {
         int diameter = 1 + radius * 2;
         int volume = diameter * heightRange * diameter;
-        BufferBuilder buffer = new BufferBuilder(owner, Vector3i.ZERO, volume);
+        BufferBuilder buffer = new BufferBuilder(owner, pos, volume);
 
         for (int dz = 0; dz <= radius; dz++) {
             for (int dx = 0; dx <= radius; dx++) {
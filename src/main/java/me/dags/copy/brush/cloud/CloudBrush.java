@@ -14,6 +14,7 @@ import me.dags.copy.block.property.Facing;
 import me.dags.copy.brush.AbstractBrush;
 import me.dags.copy.brush.Aliases;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryStore;
 import me.dags.copy.brush.option.Checks;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.Parsable;
@@ -57,7 +58,7 @@ public class CloudBrush extends AbstractBrush implements Parsable {
     private float density = 0F;
 
     private CloudBrush() {
-        super(5);
+        super(HistoryStore.getInstance().getDepth());
         setOption(RANGE, 32);
     }
 
@@ -10,6 +10,7 @@ import me.dags.copy.brush.AbstractBrush;
 import me.dags.copy.brush.Action;
 import me.dags.copy.brush.Aliases;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryStore;
 import me.dags.copy.brush.line.iterator.LineIterator;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.value.Palette;
@@ -37,7 +38,7 @@ public class LineBrush extends AbstractBrush {
     private List<Vector3i> points = new LinkedList<>();
 
     private LineBrush() {
-        super(5);
+        super(HistoryStore.getInstance().getDepth());
     }
 
     @Override
@@ -14,12 +14,12 @@ import me.dags.copy.brush.Action;
 import me.dags.copy.brush.Aliases;
 import me.dags.copy.brush.Brush;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryRecord;
 import me.dags.copy.brush.option.Checks;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.operation.UndoOperation;
 import me.dags.copy.registry.brush.BrushSupplier;
 import me.dags.copy.util.fmt;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.entity.living.player.Player;
 
 /**
@@ -100,7 +100,7 @@ public class MultiPointBrush extends AbstractBrush {
         }
 
         while (history.hasNext()) {
-            LinkedList<BlockSnapshot> record = history.popRecord();
+            HistoryRecord record = history.popRecord();
             UndoOperation operation = new UndoOperation(record, player.getUniqueId(), history);
             CopyPasta.getInstance().getOperationManager().queueOperation(operation);
         }
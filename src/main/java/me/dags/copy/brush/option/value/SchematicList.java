@@ -1,5 +1,7 @@
 package me.dags.copy.brush.option.value;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import me.dags.config.Node;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.registry.schematic.SchematicEntry;
@@ -12,6 +14,38 @@ public class SchematicList extends WeightedList<SchematicEntry> implements Node.
 
     public static final Option<SchematicList> OPTION = Option.of("schematics", SchematicList.class, SchematicList::new);
 
+    // how many picks are drawn (and start loading) ahead of being used
+    private static final int PREFETCH = 2;
+
+    private final Deque<SchematicEntry> upcoming = new ArrayDeque<>();
+
+    @Override
+    public SchematicList add(SchematicEntry value, double weight) {
+        super.add(value, weight);
+        upcoming.clear();
+        return this;
+    }
+
+    // picks are drawn in advance so that the schematics they point to are already loading before they're needed
+    @Override
+    public SchematicEntry next() {
+        fill();
+        SchematicEntry next = upcoming.poll();
+        fill();
+        return next;
+    }
+
+    private void fill() {
+        while (upcoming.size() < PREFETCH && !isEmpty()) {
+            SchematicEntry entry = super.next();
+            if (entry == null) {
+                return;
+            }
+            upcoming.add(entry);
+            entry.getSchematic();
+        }
+    }
+
     @Override
     public SchematicList fromNode(Node node) {
         SchematicList list = new SchematicList();
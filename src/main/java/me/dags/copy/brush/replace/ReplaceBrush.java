@@ -8,6 +8,7 @@ import me.dags.copy.block.volume.VolumeMapper;
 import me.dags.copy.brush.AbstractBrush;
 import me.dags.copy.brush.Aliases;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryStore;
 import me.dags.copy.brush.option.Checks;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.value.MapperSet;
@@ -31,7 +32,7 @@ public class ReplaceBrush extends AbstractBrush {
     public static final Option<MapperSet> MAPPERS = MapperSet.OPTION;
 
     private ReplaceBrush() {
-        super(5);
+        super(HistoryStore.getInstance().getDepth());
     }
 
     @Override
@@ -3,17 +3,21 @@ package me.dags.copy.brush.schematic;
 import com.flowpowered.math.vector.Vector3i;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.block.property.Facing;
 import me.dags.copy.brush.Action;
 import me.dags.copy.brush.Aliases;
+import me.dags.copy.brush.clipboard.Clipboard;
 import me.dags.copy.brush.clipboard.ClipboardBrush;
+import me.dags.copy.brush.clipboard.SelectorBrush;
 import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.value.SchematicList;
 import me.dags.copy.registry.brush.BrushSupplier;
 import me.dags.copy.registry.schematic.CachedSchematic;
 import me.dags.copy.registry.schematic.Repository;
+import me.dags.copy.registry.schematic.SchematicEntry;
 import me.dags.copy.registry.schematic.SchematicRegistry;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.entity.living.player.Player;
@@ -33,8 +37,29 @@ public class SchematicBrush extends ClipboardBrush {
     public static final Option<String> DIR = Option.of("dir", "");
     public static final Option<Repository> REPOSITORY = Option.of("repository", Repository.class , SchematicRegistry.getInstance()::getDefaultRepo);
 
+    // the old selection limit, nbt saves still copy the whole selection in a single tick
+    private static final int NBT_LIMIT = 50000;
+
+    private boolean loading = false;
+
     @Override
     public void commitSelection(Player player, Vector3i min, Vector3i max, Vector3i origin, int size) {
+        Repository repository = getOption(REPOSITORY);
+        String dir = getOption(DIR);
+        String name = getOption(NAME);
+
+        if (repository.isSavePacked()) {
+            savePacked(player, repository, min, max, origin, dir, name);
+            return;
+        }
+
+        // nbt schematics are copied in one go on the main thread (tile entities & entities included)
+        int limit = SelectorBrush.getLimit(player, NBT_LIMIT);
+        if (size > limit) {
+            fmt.error("Selection is too large to save as NBT: ").stress(size).info(" / ").stress(limit).tell(player);
+            return;
+        }
+
         Facing horizontal = Facing.getHorizontal(player);
         Facing vertical = Facing.getVertical(player);
 
@@ -47,9 +72,21 @@ public class SchematicBrush extends ClipboardBrush {
                 .volume(volume)
                 .build();
 
-        Repository repository = getOption(REPOSITORY);
-        Supplier<Optional<Path>> async = repository.save(schematic, getOption(DIR), getOption(NAME));
+        save(player, repository.save(schematic, dir, name));
+    }
+
+    // packed schematics only hold block states so can be copied across ticks like a clipboard
+    private void savePacked(Player player, Repository repository, Vector3i min, Vector3i max, Vector3i origin, String dir, String name) {
+        boolean queued = Clipboard.capture(player, min, max, origin, clipboard -> {
+            save(player, repository.savePacked(clipboard, dir, name));
+        });
+
+        if (!queued) {
+            fmt.error("Unable to copy the selection right now").tell(player);
+        }
+    }
 
+    private void save(Player player, Supplier<Optional<Path>> async) {
         CopyPasta.getInstance().submitAsync(async, path -> {
             if (path.isPresent()) {
                 fmt.info("Successfully saved to %s", path.get()).tell(player);
@@ -68,13 +105,43 @@ public class SchematicBrush extends ClipboardBrush {
                 return;
             }
 
-            Optional<CachedSchematic> schematic = list.next().getSchematic();
-            schematic.ifPresent(this::setClipboard);
+            if (loading) {
+                fmt.sub("Loading...").tell(CopyPasta.NOTICE_TYPE, player);
+                return;
+            }
+
+            SchematicEntry entry = list.next();
+            CompletableFuture<CachedSchematic> schematic = entry.getSchematic();
+
+            // usually already loaded by the list's prefetch, otherwise paste once it's ready
+            if (!schematic.isDone()) {
+                loading = true;
+                fmt.sub("Loading %s...", entry).tell(CopyPasta.NOTICE_TYPE, player);
+                schematic.whenComplete((s, t) -> CopyPasta.getInstance().submitSync(() -> {
+                    loading = false;
+                    if (player.isOnline()) {
+                        paste(player, pos, action, entry, s);
+                    }
+                }));
+                return;
+            }
+
+            paste(player, pos, action, entry, schematic.isCompletedExceptionally() ? null : schematic.join());
+            return;
         }
 
         super.secondary(player, pos, action);
     }
 
+    private void paste(Player player, Vector3i pos, Action action, SchematicEntry entry, CachedSchematic schematic) {
+        if (schematic == null) {
+            fmt.warn("Unable to load schematic %s", entry).tell(player);
+            return;
+        }
+        setClipboard(schematic);
+        super.secondary(player, pos, action);
+    }
+
     private enum Mode {
         PASTE,
         SAVE,
@@ -34,7 +34,7 @@ public class StencilBrush extends ClipboardBrush {
     @Override
     public void primary(Player player, Vector3i pos, Action action) {
         if (action == Action.SECONDARY) {
-            setClipboard(Clipboard.empty());
+            replaceClipboard(Clipboard.empty());
             fmt.info("Cleared stencil").tell(player);
         } else {
             undo(player, getHistory());
@@ -58,7 +58,7 @@ public class StencilBrush extends ClipboardBrush {
 
         StencilVolume volume = new StencilVolume(stencil, palette, depth);
         Clipboard clipboard = Clipboard.stencil(player, volume, stencil.getOffset());
-        setClipboard(clipboard);
+        replaceClipboard(clipboard);
         apply(player, pos, getHistory());
         fmt.sub("Pasting...").tell(CopyPasta.NOTICE_TYPE, player);
     }
@@ -0,0 +1,31 @@
+package me.dags.copy.command;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import me.dags.commandbus.annotation.Command;
+import me.dags.commandbus.annotation.Description;
+import me.dags.commandbus.annotation.Permission;
+import me.dags.commandbus.annotation.Src;
+import me.dags.copy.brush.clipboard.ClipboardCache;
+import me.dags.copy.util.Utils;
+import me.dags.copy.util.fmt;
+import org.spongepowered.api.command.CommandSource;
+
+/**
+ * @author dags <dags@dags.me>
+ */
+public class ClipboardCommands {
+
+    @Command("clipboard cache")
+    @Permission("copypasta.command.clipboard")
+    @Description("Show how much memory the transformed clipboard cache is using")
+    public void cache(@Src CommandSource source) {
+        ClipboardCache cache = ClipboardCache.getInstance();
+        CacheStats stats = cache.getStats();
+        fmt.stress("Clipboard cache: ").info("%s / %s", Utils.formatBytes(cache.getBytes()), Utils.formatBytes(cache.getMaxBytes()))
+                .info(", entries: ").stress(cache.getSize())
+                .info(", hits: ").stress(stats.hitCount())
+                .info(", misses: ").stress(stats.missCount())
+                .info(", evictions: ").stress(stats.evictionCount())
+                .tell(source);
+    }
+}
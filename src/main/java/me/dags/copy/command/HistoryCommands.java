@@ -0,0 +1,35 @@
+package me.dags.copy.command;
+
+import java.util.Map;
+import java.util.UUID;
+import me.dags.commandbus.annotation.Command;
+import me.dags.commandbus.annotation.Description;
+import me.dags.commandbus.annotation.Permission;
+import me.dags.commandbus.annotation.Src;
+import me.dags.commandbus.fmt.PagFormatter;
+import me.dags.copy.brush.HistoryAccountant;
+import me.dags.copy.util.Utils;
+import me.dags.copy.util.fmt;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+
+/**
+ * @author dags <dags@dags.me>
+ */
+public class HistoryCommands {
+
+    @Command("history usage")
+    @Permission("copypasta.command.history")
+    @Description("Show how much memory each player's undo history is using")
+    public void usage(@Src CommandSource source) {
+        HistoryAccountant accountant = HistoryAccountant.getInstance();
+        PagFormatter page = fmt.page();
+        page.title().stress("History: ").info("%s / %s", Utils.formatBytes(accountant.getBytes()), Utils.formatBytes(accountant.getMaxBytes()));
+        for (Map.Entry<UUID, Long> entry : accountant.getUsage().entrySet()) {
+            String name = Sponge.getServer().getPlayer(entry.getKey()).map(Player::getName).orElse(entry.getKey().toString());
+            page.line().subdued(" - ").stress(name).info(" %s", Utils.formatBytes(entry.getValue()));
+        }
+        page.sort(true).build().sendTo(source);
+    }
+}
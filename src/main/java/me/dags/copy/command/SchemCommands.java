@@ -1,15 +1,20 @@
 package me.dags.copy.command;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import java.util.Collection;
 import java.util.Optional;
 import me.dags.commandbus.annotation.Command;
 import me.dags.commandbus.annotation.Description;
 import me.dags.commandbus.annotation.Permission;
 import me.dags.commandbus.annotation.Src;
+import me.dags.copy.CopyPasta;
 import me.dags.copy.brush.option.value.SchematicList;
 import me.dags.copy.brush.schematic.SchematicBrush;
+import me.dags.copy.registry.schematic.Repository;
 import me.dags.copy.registry.schematic.SchematicEntry;
+import me.dags.copy.registry.schematic.SchematicRegistry;
 import me.dags.copy.util.fmt;
+import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.Player;
 
 /**
@@ -28,6 +33,31 @@ public class SchemCommands {
         }
     }
 
+    @Command("schem|sch cache")
+    @Permission("copypasta.command.schem.cache")
+    @Description("Show how many blocks the loaded schematic cache is holding")
+    public void cache(@Src CommandSource source) {
+        SchematicRegistry registry = SchematicRegistry.getInstance();
+        CacheStats stats = registry.getStats();
+        fmt.stress("Schematic cache: ").info("%s / %s blocks", registry.getBlocks(), registry.getMaxBlocks())
+                .info(", entries: ").stress(registry.getSize())
+                .info(", hits: ").stress(stats.hitCount())
+                .info(", misses: ").stress(stats.missCount())
+                .info(", evictions: ").stress(stats.evictionCount())
+                .info(", low memory trims: ").stress(registry.getPressureEvictions())
+                .tell(source);
+    }
+
+    @Command("schem|sch convert <repository>")
+    @Permission("copypasta.command.schem.convert")
+    @Description("Write a packed copy of every schematic in the repository that doesn't already have one")
+    public void convert(@Src CommandSource source, Repository repository) {
+        fmt.info("Converting schematics in ").stress(repository.getName()).info("...").tell(source);
+        CopyPasta.getInstance().submitAsync(repository.convert(), count -> {
+            fmt.info("Converted ").stress(count).info(" schematics in ").stress(repository.getName()).tell(source);
+        });
+    }
+
     @Command("schem|sch <path> <weight>")
     @Permission("copypasta.command.schem.load")
     @Description("Load all schematics from the given path onto your wand")
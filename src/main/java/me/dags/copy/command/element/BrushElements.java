@@ -16,6 +16,7 @@ import me.dags.copy.brush.option.Option;
 import me.dags.copy.brush.option.Value;
 import me.dags.copy.brush.option.value.Palette;
 import me.dags.copy.registry.brush.BrushRegistry;
+import me.dags.copy.registry.schematic.Repository;
 import me.dags.copy.registry.schematic.SchematicEntry;
 import me.dags.copy.registry.schematic.SchematicRegistry;
 import org.spongepowered.api.block.BlockState;
@@ -59,6 +60,16 @@ public class BrushElements {
             }
             return schem.get();
         });
+
+        builder.filter(Repository.class, Filter.STARTS_WITH);
+        builder.options(Repository.class, SchematicRegistry.getInstance()::getRepositories);
+        builder.parser(Repository.class, s -> {
+            Optional<Repository> repository = SchematicRegistry.getInstance().getRepository(s);
+            if (!repository.isPresent()) {
+                throw new CommandException("Could not find repository '%s'", s);
+            }
+            return repository.get();
+        });
     }
 
     private static void brush(ElementFactory.Builder builder) {
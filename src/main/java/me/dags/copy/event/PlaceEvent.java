@@ -1,11 +1,12 @@
 package me.dags.copy.event;
 
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Predicate;
 import me.dags.copy.block.Snapshot;
+import me.dags.copy.block.volume.BufferView;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.event.block.ChangeBlockEvent;
@@ -21,23 +22,28 @@ public class PlaceEvent extends AbstractEvent implements ChangeBlockEvent.Place
 
     private final Cause cause;
     private final World world;
-    private final List<Snapshot> view;
+    private final BufferView view;
+    private final int start;
+    private final int end;
 
     private boolean cancelled;
+    private Snapshot[] snapshots;
     private List<Transaction<BlockSnapshot>> transactions;
 
-    public PlaceEvent(Cause cause, World world, List<Snapshot> view) {
+    public PlaceEvent(Cause cause, World world, BufferView view, int start, int end) {
         this.cause = cause;
         this.world = world;
         this.view = view;
+        this.start = start;
+        this.end = end;
     }
 
     @Override
     public List<Transaction<BlockSnapshot>> getTransactions() {
         if (transactions == null) {
-            transactions = new LinkedList<>();
-            for (Snapshot snapshot : view) {
-                transactions.add(snapshot.getTransaction(world));
+            transactions = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                transactions.add(getSnapshot(i).getTransaction(world));
             }
         }
         return transactions;
@@ -46,11 +52,16 @@ public class PlaceEvent extends AbstractEvent implements ChangeBlockEvent.Place
     @Override
     public List<Transaction<BlockSnapshot>> filter(Predicate<Location<World>> predicate) {
         List<Transaction<BlockSnapshot>> filtered = null;
-        for (Snapshot snapshot : view) {
-            if (!predicate.test(snapshot.getLocation(world))) {
+        for (int i = start; i < end; i++) {
+            if (!view.isValid(i)) {
+                continue;
+            }
+            Location<World> location = world.getLocation(view.getX(i), view.getY(i), view.getZ(i));
+            if (!predicate.test(location)) {
                 if (filtered == null) {
                     filtered = Lists.newLinkedList();
                 }
+                Snapshot snapshot = getSnapshot(i);
                 filtered.add(snapshot.getTransaction(world));
                 snapshot.setValid(false);
             }
@@ -58,6 +69,17 @@ public class PlaceEvent extends AbstractEvent implements ChangeBlockEvent.Place
         return filtered == null ? Collections.emptyList() : filtered;
     }
 
+    // writes back any changes listeners made to the validity of transactions
+    public void commit() {
+        if (snapshots != null) {
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot != null) {
+                    snapshot.commit();
+                }
+            }
+        }
+    }
+
     @Override
     public boolean isCancelled() {
         return cancelled;
@@ -77,4 +99,16 @@ public class PlaceEvent extends AbstractEvent implements ChangeBlockEvent.Place
     public Cause getCause() {
         return cause;
     }
+
+    // snapshots (and their transactions) are only created if a listener actually asks for them
+    private Snapshot getSnapshot(int index) {
+        if (snapshots == null) {
+            snapshots = new Snapshot[end - start];
+        }
+        Snapshot snapshot = snapshots[index - start];
+        if (snapshot == null) {
+            snapshots[index - start] = snapshot = view.getSnapshot(index);
+        }
+        return snapshot;
+    }
 }
@@ -0,0 +1,168 @@
+package me.dags.copy.operation;
+
+import com.flowpowered.math.vector.Vector3i;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import me.dags.copy.CopyPasta;
+import me.dags.copy.PlayerManager;
+import me.dags.copy.block.volume.PackedVolume;
+import me.dags.copy.util.fmt;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.World;
+
+/**
+ * Copies a region of the world into a PackedVolume one 16x16x16 section at a time, spreading the reads over as many
+ * ticks as the operation budget requires. Each section is packed off the main thread as soon as it has been read and
+ * the volume is assembled once they're all done. The volume's min is zero (ie relative to the region's min).
+ *
+ * @author dags <dags@dags.me>
+ */
+public class CaptureOperation implements Operation {
+
+    private static final int SECTION_SIZE = PackedVolume.SECTION_SIZE;
+    private static final int SECTION_VOLUME = PackedVolume.SECTION_VOLUME;
+
+    private final UUID owner;
+    private final World world;
+    private final Vector3i min;
+    private final Vector3i size;
+    private final int sectionsX;
+    private final int sectionsZ;
+    private final int sectionCount;
+    private final long volume;
+    private final Consumer<PackedVolume> callback;
+    private final List<CompletableFuture<PackedVolume.Section>> sections;
+
+    private BlockState[] blocks;
+    private int section = 0;
+    private int index = 0;
+    private long read = 0;
+    private int progress = 0;
+
+    public CaptureOperation(World world, UUID owner, Vector3i min, Vector3i max, Consumer<PackedVolume> callback) {
+        this.owner = owner;
+        this.world = world;
+        this.min = min;
+        this.size = max.sub(min).add(Vector3i.ONE);
+        this.sectionsX = PackedVolume.getSections(size.getX());
+        this.sectionsZ = PackedVolume.getSections(size.getZ());
+        this.sectionCount = PackedVolume.getSectionCount(size);
+        this.volume = (long) size.getX() * size.getY() * size.getZ();
+        this.callback = callback;
+        this.sections = new ArrayList<>(sectionCount);
+    }
+
+    @Override
+    public UUID getOwner() {
+        return owner;
+    }
+
+    @Override
+    public Phase calculate(Limit limit) {
+        Optional<Player> player = Sponge.getServer().getPlayer(owner);
+        if (!player.isPresent()) {
+            return Phase.CANCELLED;
+        }
+
+        while (section < sectionCount) {
+            int offX = (section % sectionsX) * SECTION_SIZE;
+            int offZ = ((section / sectionsX) % sectionsZ) * SECTION_SIZE;
+            int offY = (section / (sectionsX * sectionsZ)) * SECTION_SIZE;
+            int maxX = Math.min(SECTION_SIZE, size.getX() - offX);
+            int maxY = Math.min(SECTION_SIZE, size.getY() - offY);
+            int maxZ = Math.min(SECTION_SIZE, size.getZ() - offZ);
+
+            if (blocks == null) {
+                blocks = new BlockState[SECTION_VOLUME];
+                index = 0;
+            }
+
+            // section indices run x, z, y so positions past the edge of the region are skipped over
+            for (; index < SECTION_VOLUME; index++) {
+                int x = index & 15;
+                int z = (index >> 4) & 15;
+                int y = index >> 8;
+                if (y >= maxY) {
+                    break;
+                }
+                if (x >= maxX || z >= maxZ) {
+                    continue;
+                }
+                if (!limit.take()) {
+                    report(player.get());
+                    return Phase.CALCULATE;
+                }
+                blocks[index] = world.getBlock(min.getX() + offX + x, min.getY() + offY + y, min.getZ() + offZ + z);
+                read++;
+            }
+
+            BlockState[] full = blocks;
+            sections.add(CompletableFuture.supplyAsync(() -> PackedVolume.Section.pack(full)));
+            blocks = null;
+            section++;
+        }
+
+        return Phase.DISPOSE;
+    }
+
+    @Override
+    public Phase test(Limit limit) {
+        return Phase.DISPOSE;
+    }
+
+    @Override
+    public Phase apply(Limit limit) {
+        return Phase.DISPOSE;
+    }
+
+    @Override
+    public void dispose(Phase phase) {
+        if (phase != Phase.DISPOSE) {
+            Sponge.getServer().getPlayer(owner).ifPresent(player -> {
+                if (phase == Phase.ERROR) {
+                    fmt.error("Error occurred during copy").tell(CopyPasta.NOTICE_TYPE, player);
+                }
+                if (phase == Phase.CANCELLED) {
+                    fmt.error("Copy cancelled").tell(CopyPasta.NOTICE_TYPE, player);
+                }
+            });
+            PlayerManager.getInstance().get(owner).ifPresent(data -> data.setOperating(false));
+            return;
+        }
+
+        CompletableFuture.allOf(sections.toArray(new CompletableFuture[sections.size()])).whenComplete((v, t) -> {
+            PackedVolume packed = null;
+            if (t == null) {
+                PackedVolume.Section[] array = sections.stream().map(CompletableFuture::join).toArray(PackedVolume.Section[]::new);
+                packed = new PackedVolume(Vector3i.ZERO, size, array);
+            } else {
+                t.printStackTrace();
+            }
+
+            PackedVolume result = packed;
+            CopyPasta.getInstance().submitSync(() -> {
+                PlayerManager.getInstance().get(owner).ifPresent(data -> data.setOperating(false));
+                if (result != null) {
+                    callback.accept(result);
+                } else {
+                    Sponge.getServer().getPlayer(owner).ifPresent(player -> fmt.error("Error occurred during copy").tell(CopyPasta.NOTICE_TYPE, player));
+                }
+            });
+        });
+    }
+
+    // updates the player whenever another whole percent of the region has been read
+    private void report(Player player) {
+        int percent = (int) (read * 100 / Math.max(1L, volume));
+        if (percent > progress) {
+            progress = percent;
+            fmt.info("Copying... ").stress("%s%%", percent).tell(CopyPasta.NOTICE_TYPE, player);
+        }
+    }
+}
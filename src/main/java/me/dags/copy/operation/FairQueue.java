@@ -0,0 +1,105 @@
+package me.dags.copy.operation;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Queues operations per owner and hands them out using deficit round-robin, so that one player's large
+ * operation cannot hold up everyone else queued in the same phase. Only used from the main thread.
+ *
+ * @author dags <dags@dags.me>
+ */
+class FairQueue {
+
+    private final ToDoubleFunction<UUID> weights;
+    private final Map<UUID, Lane> lanes = new HashMap<>();
+    private final LinkedList<Lane> order = new LinkedList<>();
+
+    private int size = 0;
+
+    FairQueue(ToDoubleFunction<UUID> weights) {
+        this.weights = weights;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getOwners() {
+        return lanes.size();
+    }
+
+    void add(Operation operation) {
+        Lane lane = lanes.get(operation.getOwner());
+        if (lane == null) {
+            lane = new Lane(operation.getOwner());
+            lanes.put(lane.owner, lane);
+            order.addLast(lane);
+        }
+        lane.operations.addLast(operation);
+        size++;
+    }
+
+    // the next owner in round-robin order that has something queued
+    Lane next() {
+        while (!order.isEmpty()) {
+            Lane lane = order.pollFirst();
+            if (lane.operations.isEmpty()) {
+                lanes.remove(lane.owner);
+                continue;
+            }
+            order.addLast(lane);
+            return lane;
+        }
+        return null;
+    }
+
+    Operation poll(Lane lane) {
+        Operation operation = lane.operations.pollFirst();
+        if (operation != null) {
+            size--;
+        }
+        return operation;
+    }
+
+    Operation poll() {
+        Lane lane = next();
+        return lane != null ? poll(lane) : null;
+    }
+
+    class Lane {
+
+        private final UUID owner;
+        private final LinkedList<Operation> operations = new LinkedList<>();
+
+        private double weight = -1;
+        private double quantum = 0;
+        private double deficit = 0;
+
+        private Lane(UUID owner) {
+            this.owner = owner;
+        }
+
+        // top the lane up by one (weighted) quantum and return how many blocks it may spend this turn
+        int grant(int quantum, int limit) {
+            if (weight < 0) {
+                weight = weights.applyAsDouble(owner);
+            }
+            this.quantum = quantum * weight;
+            this.deficit += this.quantum;
+            return (int) Math.max(1, Math.min(limit, deficit));
+        }
+
+        void charge(int blocks) {
+            // a lane carries at most one quantum over to its next turn, and nothing once it has drained
+            deficit = operations.isEmpty() ? 0 : Math.max(0, Math.min(deficit - blocks, quantum));
+        }
+    }
+}
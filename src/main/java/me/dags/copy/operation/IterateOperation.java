@@ -1,22 +1,20 @@
 package me.dags.copy.operation;
 
 import com.flowpowered.math.vector.Vector3i;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.PlayerManager;
-import me.dags.copy.block.Snapshot;
+import me.dags.copy.block.volume.BufferBuilder;
+import me.dags.copy.block.volume.BufferView;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryRecord;
 import me.dags.copy.brush.line.iterator.LineIterator;
 import me.dags.copy.brush.option.value.Palette;
 import me.dags.copy.event.PlaceEvent;
 import me.dags.copy.operation.modifier.Translate;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.cause.Cause;
@@ -27,8 +25,6 @@ import org.spongepowered.api.world.World;
  */
 public class IterateOperation implements Operation {
 
-    private static final LinkedList<BlockSnapshot> EMPTY_RECORD = new LinkedList<>();
-
     private final UUID owner;
     private final World world;
     private final History history;
@@ -36,8 +32,12 @@ public class IterateOperation implements Operation {
     private final Translate translate;
     private final LineIterator iterator;
 
-    private List<Snapshot> snapshots = Collections.emptyList();
-    private LinkedList<BlockSnapshot> record = EMPTY_RECORD;
+    private BufferView view;
+    private HistoryRecord record;
+
+    // a position that didn't fit in the previous batch's buffer
+    private Vector3i pendingPosition;
+    private BlockState pendingState;
 
     public IterateOperation(World world, UUID owner, LineIterator iterator, Translate translate, Palette palette, History history) {
         this.owner = owner;
@@ -49,25 +49,52 @@ public class IterateOperation implements Operation {
     }
 
     @Override
-    public Phase calculate(int limit) {
-        // start new list of changes
-        snapshots = new LinkedList<>();
+    public UUID getOwner() {
+        return owner;
+    }
+
+    @Override
+    public Phase calculate(Limit limit) {
+        BufferBuilder buffer = null;
+
+        // carry over the position that didn't fit in the last batch
+        if (pendingPosition != null && limit.take()) {
+            buffer = new BufferBuilder(owner, pendingPosition, getBatchSize(limit));
+            buffer.addAbsolute(pendingState, pendingPosition);
+            pendingPosition = null;
+            pendingState = null;
+        }
 
         // calculate the next lot of positions
-        while (limit-- > 0 && iterator.hasNext()) {
-            Vector3i position = iterator.nextPosition();
+        while (iterator.hasNext() && limit.take()) {
+            Vector3i position = translate.apply(world, iterator.nextPosition());
             BlockState state = palette.next();
-            Snapshot snapshot = new Snapshot(state, position, owner);
-            translate.accept(world, snapshot);
-            snapshots.add(snapshot);
+
+            if (buffer == null) {
+                buffer = new BufferBuilder(owner, position, getBatchSize(limit));
+            } else if (!buffer.contains(position.getX(), position.getZ())) {
+                pendingPosition = position;
+                pendingState = state;
+                break;
+            }
+
+            buffer.addAbsolute(state, position);
         }
 
+        if (buffer == null) {
+            return hasNext() ? Phase.CALCULATE : Phase.DISPOSE;
+        }
+
+        // apply the batch a chunk at a time
+        view = buffer.getView();
+        view.sortByChunk();
+
         // go to test phase
         return Phase.TEST;
     }
 
     @Override
-    public Phase test(int limit) {
+    public Phase test(Limit limit) {
         // is player still online
         Optional<Player> player = Sponge.getServer().getPlayer(owner);
         if (!player.isPresent()) {
@@ -81,37 +108,39 @@ public class IterateOperation implements Operation {
                 .build();
 
         // post event
-        PlaceEvent event = new PlaceEvent(cause, world, snapshots);
+        PlaceEvent event = new PlaceEvent(cause, world, view, 0, view.size());
         boolean cancel = Sponge.getEventManager().post(event);
 
         // event cancelled
         if (cancel) {
             // calculate next points on snapshots
-            if (iterator.hasNext()) {
+            if (hasNext()) {
                 return Phase.CALCULATE;
             }
             return Phase.CANCELLED;
         }
 
+        event.commit();
+
         // event allowed, go to apply phase
         return Phase.APPLY;
     }
 
     @Override
-    public Phase apply(int limit) {
-        // apply the current list of snapshots
-        for (Snapshot snapshot : snapshots) {
-            if (snapshot.isValid()) {
-                if (record.isEmpty()) {
-                    record = history.nextRecord();
+    public Phase apply(Limit limit) {
+        // apply the current batch
+        for (int i = 0; i < view.size(); i++) {
+            if (view.isValid(i)) {
+                if (record == null) {
+                    record = history.nextRecord(owner, world);
                 }
-                record.add(snapshot.getFrom(world));
-                snapshot.restore(world);
+                record.add(world, view.getX(i), view.getY(i), view.getZ(i));
+                view.restore(world, i);
             }
         }
 
         // go back to calculate phase if more stuff to draw
-        if (iterator.hasNext()) {
+        if (hasNext()) {
             return Phase.CALCULATE;
         }
 
@@ -119,8 +148,20 @@ public class IterateOperation implements Operation {
         return Phase.DISPOSE;
     }
 
+    private static int getBatchSize(Limit limit) {
+        return Math.min(limit.getRemaining() + 1, 4096);
+    }
+
+    private boolean hasNext() {
+        return pendingPosition != null || iterator.hasNext();
+    }
+
     @Override
     public void dispose(Phase phase) {
+        if (record != null) {
+            history.complete(record);
+        }
+
         Sponge.getServer().getPlayer(owner).ifPresent(player -> {
             if (phase == Operation.Phase.ERROR) {
                 fmt.error("Error occurred during operation").tell(CopyPasta.NOTICE_TYPE, player);
@@ -0,0 +1,36 @@
+package me.dags.copy.operation;
+
+/**
+ * The number of blocks an operation may process in a single call, and a count of how many it actually did.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class Limit {
+
+    private final int max;
+    private int count = 0;
+
+    public Limit(int max) {
+        this.max = max;
+    }
+
+    public boolean take() {
+        if (count < max) {
+            count++;
+            return true;
+        }
+        return false;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getRemaining() {
+        return max - count;
+    }
+}
@@ -1,15 +1,19 @@
 package me.dags.copy.operation;
 
+import java.util.UUID;
+
 /**
  * @author dags <dags@dags.me>
  */
 public interface Operation {
 
-    Phase calculate(int limit);
+    UUID getOwner();
+
+    Phase calculate(Limit limit);
 
-    Phase test(int limit);
+    Phase test(Limit limit);
 
-    Phase apply(int limit);
+    Phase apply(Limit limit);
 
     void dispose(Phase phase);
 
@@ -1,55 +1,76 @@
 package me.dags.copy.operation;
 
-import java.util.LinkedList;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import me.dags.config.Node;
+import org.spongepowered.api.Sponge;
 
 /**
  * @author dags <dags@dags.me>
  */
 public class OperationManager implements Runnable {
 
-    private final int preLimit;
-    private final int changeLimit;
-    private final Object lock = new Object();
-    private final LinkedList<Operation> calculate = new LinkedList<>();
-    private final LinkedList<Operation> test = new LinkedList<>();
-    private final LinkedList<Operation> apply = new LinkedList<>();
+    public static final String WEIGHT_OPTION = "copypasta.weight";
 
-    private boolean finishing = false;
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long LAG_TOLERANCE = TimeUnit.MILLISECONDS.toNanos(5);
 
-    public OperationManager(int pre, int change) {
-        this.preLimit = pre;
-        this.changeLimit = change;
-    }
+    // operations may be submitted from any thread, but only the main thread moves them between phases
+    private final Queue<Operation> submitted = new ConcurrentLinkedQueue<>();
+    private final FairQueue calculate = new FairQueue(OperationManager::getWeight);
+    private final FairQueue test = new FairQueue(OperationManager::getWeight);
+    private final FairQueue apply = new FairQueue(OperationManager::getWeight);
+
+    // rough starting estimates (nanos per block), refined by measuring each phase as it runs
+    private final Cost calculateCost = new Cost(400);
+    private final Cost testCost = new Cost(100);
+    private final Cost applyCost = new Cost(1000);
+
+    private long minBudget = TimeUnit.MILLISECONDS.toNanos(2);
+    private long maxBudget = TimeUnit.MILLISECONDS.toNanos(20);
+    private long budgetStep = TimeUnit.MILLISECONDS.toNanos(1);
+    private long budget = minBudget;
+    private long lastTick = 0L;
+
+    private volatile boolean finishing = false;
 
     public void reset() {
         finishing = false;
+        lastTick = 0L;
     }
 
-    public void queueOperation(Operation operation) {
+    public void configure(Node node) {
+        minBudget = TimeUnit.MICROSECONDS.toNanos(node.get("budget_min_micros", 2000));
+        maxBudget = TimeUnit.MICROSECONDS.toNanos(node.get("budget_max_micros", 20000));
+        budgetStep = TimeUnit.MICROSECONDS.toNanos(node.get("budget_step_micros", 1000));
+        maxBudget = Math.max(minBudget, maxBudget);
+        budget = Math.min(maxBudget, Math.max(minBudget, budget));
+    }
+
+    public boolean queueOperation(Operation operation) {
         if (finishing) {
-            return;
+            return false;
         }
 
-        synchronized (lock) {
-            this.calculate.addLast(operation);
-        }
+        return submitted.add(operation);
     }
 
     @Override
     public void run() {
-        // drain queues in reverse order so that operations are spread across ticks
-        Operation apply = this.apply.pollFirst();
-        apply(apply, preLimit);
-
-        Operation test = this.test.pollFirst();
-        test(test, preLimit);
+        long start = System.nanoTime();
+        adjustBudget(start);
+        long deadline = start + budget;
 
-        Operation calculate;
-        synchronized (lock) {
-            calculate = this.calculate.pollFirst();
-        }
+        drainSubmitted();
 
-        compute(calculate, changeLimit);
+        // drain queues in reverse order so that operations are spread across ticks
+        // each phase gets an even share of whatever time the phases before it left unused
+        process(apply, Operation.Phase.APPLY, applyCost, remaining(deadline, 3));
+        process(test, Operation.Phase.TEST, testCost, remaining(deadline, 2));
+        process(calculate, Operation.Phase.CALCULATE, calculateCost, remaining(deadline, 1));
     }
 
     public void finish() {
@@ -57,60 +78,116 @@ public class OperationManager implements Runnable {
             return;
         }
 
-        synchronized (lock) {
-            finishing = true;
+        finishing = true;
+        drainSubmitted();
 
-            while (!calculate.isEmpty()) {
-                Operation operation = calculate.pollFirst();
-                compute(operation, Integer.MAX_VALUE);
-            }
+        // operations can cycle back through the phases (ie while streaming), so keep going until nothing is left
+        while (!calculate.isEmpty() || !test.isEmpty() || !apply.isEmpty()) {
+            boolean progress = finish(calculate, Operation.Phase.CALCULATE);
+            progress |= finish(test, Operation.Phase.TEST);
+            progress |= finish(apply, Operation.Phase.APPLY);
 
-            while (!test.isEmpty()) {
-                Operation operation = test.pollFirst();
-                test(operation, Integer.MAX_VALUE);
+            // anything left is waiting on async work that won't be picked up again
+            if (!progress) {
+                cancel(calculate);
+                cancel(test);
+                cancel(apply);
             }
+        }
+    }
 
-            while (!apply.isEmpty()) {
-                Operation operation = apply.pollFirst();
-                apply(operation, Integer.MAX_VALUE);
-            }
+    private boolean finish(FairQueue queue, Operation.Phase phase) {
+        boolean progress = false;
+        for (int i = queue.size(); i > 0; i--) {
+            Operation operation = queue.poll();
+            Limit limit = new Limit(Integer.MAX_VALUE);
+            Operation.Phase result = process(operation, phase, limit);
+            progress |= result != phase || limit.getCount() > 0;
         }
+        return progress;
     }
 
-    private void compute(Operation operation, int limit) {
-        if (operation != null) {
-            try {
-                Operation.Phase result = operation.calculate(limit);
-                queue(operation, result);
-            } catch (Throwable t) {
-                t.printStackTrace();
-                operation.dispose(Operation.Phase.ERROR);
+    private void cancel(FairQueue queue) {
+        while (!queue.isEmpty()) {
+            queue.poll().dispose(Operation.Phase.CANCELLED);
+        }
+    }
+
+    private void drainSubmitted() {
+        Operation operation;
+        while ((operation = submitted.poll()) != null) {
+            calculate.add(operation);
+        }
+    }
+
+    // the gap between two runs is the length of the previous server tick (plus our own work). if ticks are
+    // running long the server is behind so back off quickly, otherwise creep back up towards the max budget
+    private void adjustBudget(long now) {
+        if (lastTick != 0L) {
+            long interval = now - lastTick;
+            if (interval > TICK + LAG_TOLERANCE) {
+                budget = Math.max(minBudget, budget / 2);
+            } else {
+                budget = Math.min(maxBudget, budget + budgetStep);
             }
         }
+        lastTick = now;
     }
 
-    private void test(Operation operation, int limit) {
-        if (operation != null) {
-            try {
-                Operation.Phase result = operation.test(limit);
-                queue(operation, result);
-            } catch (Throwable t) {
-                t.printStackTrace();
-                operation.dispose(Operation.Phase.ERROR);
+    // keep handing out turns in the phase until its share of the tick (in time or blocks) is used up
+    private void process(FairQueue queue, Operation.Phase phase, Cost cost, long nanos) {
+        long end = System.nanoTime() + nanos;
+        int limit = cost.getLimit(nanos);
+        int quantum = Math.max(Cost.MIN_LIMIT, limit / Math.max(1, queue.getOwners()));
+        int idle = 0;
+
+        while (limit > 0 && System.nanoTime() < end) {
+            FairQueue.Lane lane = queue.next();
+            if (lane == null) {
+                return;
+            }
+
+            Operation operation = queue.poll(lane);
+            Limit counter = new Limit(lane.grant(quantum, limit));
+            process(operation, phase, counter);
+            lane.charge(counter.getCount());
+            limit -= counter.getCount();
+
+            // stop once a whole round of turns has gone by without any work being done
+            idle = counter.getCount() > 0 ? 0 : idle + 1;
+            if (idle > queue.size()) {
+                return;
             }
         }
     }
 
-    private void apply(Operation operation, int limit) {
+    private Operation.Phase process(Operation operation, Operation.Phase phase, Limit limit) {
         if (operation != null) {
             try {
-                Operation.Phase result = operation.apply(limit);
+                long start = System.nanoTime();
+                Operation.Phase result;
+                switch (phase) {
+                    case CALCULATE:
+                        result = operation.calculate(limit);
+                        calculateCost.record(System.nanoTime() - start, limit.getCount());
+                        break;
+                    case TEST:
+                        result = operation.test(limit);
+                        testCost.record(System.nanoTime() - start, limit.getCount());
+                        break;
+                    default:
+                        result = operation.apply(limit);
+                        applyCost.record(System.nanoTime() - start, limit.getCount());
+                        break;
+                }
                 queue(operation, result);
+                return result;
             } catch (Throwable t) {
                 t.printStackTrace();
                 operation.dispose(Operation.Phase.ERROR);
             }
         }
+        return Operation.Phase.ERROR;
     }
 
     private void queue(Operation operation, Operation.Phase phase) {
@@ -128,4 +205,48 @@ public class OperationManager implements Runnable {
                 operation.dispose(phase);
         }
     }
+
+    private static long remaining(long deadline, int phases) {
+        return Math.max(0L, deadline - System.nanoTime()) / phases;
+    }
+
+    // players (or their permission groups) can be given a larger/smaller share via the 'copypasta.weight' option
+    private static double getWeight(UUID owner) {
+        Optional<String> weight = Sponge.getServer().getPlayer(owner).flatMap(p -> p.getOption(WEIGHT_OPTION));
+        if (weight.isPresent()) {
+            try {
+                return Math.max(0.01D, Double.parseDouble(weight.get()));
+            } catch (NumberFormatException e) {
+                return 1D;
+            }
+        }
+        return 1D;
+    }
+
+    /**
+     * Moving average of the time a phase takes per block
+     */
+    private static class Cost {
+
+        private static final int MIN_LIMIT = 64;
+        private static final double SMOOTHING = 0.25D;
+
+        private double nanosPerBlock;
+
+        private Cost(double nanosPerBlock) {
+            this.nanosPerBlock = nanosPerBlock;
+        }
+
+        private void record(long nanos, int blocks) {
+            if (blocks > 0) {
+                double sample = (double) nanos / blocks;
+                nanosPerBlock += (sample - nanosPerBlock) * SMOOTHING;
+            }
+        }
+
+        private int getLimit(long nanos) {
+            double limit = nanos / Math.max(1D, nanosPerBlock);
+            return (int) Math.max(MIN_LIMIT, Math.min(Integer.MAX_VALUE, limit));
+        }
+    }
 }
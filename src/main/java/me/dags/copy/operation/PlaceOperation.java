@@ -3,46 +3,115 @@ package me.dags.copy.operation;
 import java.util.UUID;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.PlayerManager;
+import me.dags.copy.block.volume.BufferStream;
+import me.dags.copy.block.volume.BufferView;
+import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryRecord;
+import me.dags.copy.operation.modifier.Filter;
+import me.dags.copy.operation.modifier.Translate;
 import me.dags.copy.operation.phase.Apply;
 import me.dags.copy.operation.phase.Calculate;
 import me.dags.copy.operation.phase.Test;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.World;
 
 /**
+ * Places the buffers produced by an async task as they arrive. Each buffer goes through the calculate, test &
+ * apply phases in turn, and all of them are recorded as a single history entry.
+ *
  * @author dags <dags@dags.me>
  */
 public class PlaceOperation implements Operation {
 
-    private final Calculate calculate;
-    private final Test test;
-    private final Apply apply;
     private final UUID owner;
+    private final World world;
+    private final History history;
+    private final BufferStream stream;
+    private final Filter fromFilter;
+    private final Filter toFilter;
+    private final Translate translate;
 
-    public PlaceOperation(UUID owner, Calculate calculate, Test test, Apply apply) {
-        this.calculate = calculate;
-        this.test = test;
-        this.apply = apply;
+    private HistoryRecord record;
+    private Calculate calculate;
+    private Test test;
+    private Apply apply;
+
+    public PlaceOperation(UUID owner, World world, History history, BufferStream stream, Filter from, Filter to, Translate translate) {
         this.owner = owner;
+        this.world = world;
+        this.history = history;
+        this.stream = stream;
+        this.fromFilter = from;
+        this.toFilter = to;
+        this.translate = translate;
+    }
+
+    @Override
+    public UUID getOwner() {
+        return owner;
     }
 
     @Override
-    public Phase calculate(int limit) {
+    public Phase calculate(Limit limit) {
+        if (calculate == null) {
+            BufferView view = stream.poll();
+            if (view == null) {
+                if (stream.hasError()) {
+                    return Phase.ERROR;
+                }
+                if (stream.isDone()) {
+                    return Phase.DISPOSE;
+                }
+                // wait for the producer
+                return Phase.CALCULATE;
+            }
+
+            if (record == null) {
+                record = history.nextRecord(owner, world);
+            }
+
+            calculate = new Calculate(world, view, fromFilter, toFilter, translate);
+            test = new Test(owner, world, view);
+            apply = new Apply(world, view, record);
+        }
         return calculate.calculate(limit);
     }
 
     @Override
-    public Phase test(int limit) {
+    public Phase test(Limit limit) {
         return test.test(limit);
     }
 
     @Override
-    public Phase apply(int limit) {
-        return apply.apply(limit);
+    public Phase apply(Limit limit) {
+        Phase phase = apply.apply(limit);
+        if (phase != Phase.DISPOSE) {
+            return phase;
+        }
+
+        // buffer complete, move on to the next one
+        calculate = null;
+        test = null;
+        apply = null;
+
+        if (stream.isDone() && !stream.hasError()) {
+            return Phase.DISPOSE;
+        }
+
+        return Phase.CALCULATE;
     }
 
     @Override
     public void dispose(Phase phase) {
+        if (phase != Phase.DISPOSE) {
+            stream.cancel();
+        }
+
+        if (record != null) {
+            history.complete(record);
+        }
+
         Sponge.getServer().getPlayer(owner).ifPresent(player -> {
             if (phase == Operation.Phase.ERROR) {
                 fmt.error("Error occurred during operation").tell(CopyPasta.NOTICE_TYPE, player);
@@ -1,48 +1,80 @@
 package me.dags.copy.operation;
 
-import java.util.LinkedList;
 import java.util.UUID;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.PlayerManager;
 import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryRecord;
+import me.dags.copy.brush.HistoryStore;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
-import org.spongepowered.api.world.BlockChangeFlag;
 
 /**
  * @author dags <dags@dags.me>
  */
 public class UndoOperation implements Operation {
 
-    private final LinkedList<BlockSnapshot> snapshots;
+    private final HistoryRecord record;
     private final History history;
     private final UUID owner;
 
-    public UndoOperation(LinkedList<BlockSnapshot> snapshots, UUID owner, History history) {
-        this.snapshots = snapshots;
+    private volatile boolean loading = false;
+    private volatile boolean failed = false;
+    private int index = -1;
+
+    public UndoOperation(HistoryRecord record, UUID owner, History history) {
+        this.record = record;
         this.history = history;
         this.owner = owner;
     }
 
     @Override
-    public Phase calculate(int limit) {
+    public UUID getOwner() {
+        return owner;
+    }
+
+    @Override
+    public Phase calculate(Limit limit) {
+        if (!Sponge.getServer().getWorld(record.getWorldId()).isPresent()) {
+            return Phase.CANCELLED;
+        }
+
+        // older records live on disk, wait for it to be read back in. failed is only checked once loading has
+        // cleared, as the load sets it just before clearing loading
+        if (loading) {
+            return Phase.CALCULATE;
+        }
+
+        if (failed) {
+            return Phase.ERROR;
+        }
+
+        if (record.isSpilled()) {
+            loading = true;
+            HistoryStore.getInstance().load(record, loaded -> {
+                failed = !loaded;
+                loading = false;
+            });
+            return Phase.CALCULATE;
+        }
+
+        index = record.size();
         return Phase.TEST;
     }
 
     @Override
-    public Phase test(int limit) {
+    public Phase test(Limit limit) {
         return Phase.APPLY;
     }
 
     @Override
-    public Phase apply(int limit) {
-        while (!snapshots.isEmpty() && limit-- > 0) {
-            BlockSnapshot snapshot = snapshots.pollLast();
-            snapshot.restore(true, BlockChangeFlag.NONE);
+    public Phase apply(Limit limit) {
+        // restore in reverse so that blocks changed more than once end up in their original state
+        while (index > 0 && limit.take()) {
+            record.restore(--index);
         }
 
-        if (!snapshots.isEmpty()) {
+        if (index > 0) {
             return Phase.APPLY;
         }
 
@@ -53,6 +85,14 @@ public class UndoOperation implements Operation {
     public void dispose(Phase phase) {
         PlayerManager.getInstance().get(owner).ifPresent(data -> data.setOperating(false));
         Sponge.getServer().getPlayer(owner).ifPresent(player -> {
+            if (phase == Phase.ERROR) {
+                fmt.error("Unable to undo, the history record could not be read").tell(CopyPasta.NOTICE_TYPE, player);
+                return;
+            }
+            if (phase == Phase.CANCELLED) {
+                fmt.error("Undo cancelled").tell(CopyPasta.NOTICE_TYPE, player);
+                return;
+            }
             int size = history.getSize();
             int max = history.getMax();
             fmt.sub("Undo Complete (%s / %s)", size, max).tell(CopyPasta.NOTICE_TYPE, player);
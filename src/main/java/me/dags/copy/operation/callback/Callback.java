@@ -6,14 +6,12 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.PlayerManager;
+import me.dags.copy.block.volume.BufferStream;
 import me.dags.copy.block.volume.BufferView;
 import me.dags.copy.brush.History;
 import me.dags.copy.operation.PlaceOperation;
 import me.dags.copy.operation.modifier.Filter;
 import me.dags.copy.operation.modifier.Translate;
-import me.dags.copy.operation.phase.Apply;
-import me.dags.copy.operation.phase.Calculate;
-import me.dags.copy.operation.phase.Test;
 import me.dags.copy.util.fmt;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
@@ -24,16 +22,34 @@ import org.spongepowered.api.world.World;
  */
 public class Callback implements FutureCallback<BufferView> {
 
+    // the number of buffers that may be waiting to be placed before the producer has to wait
+    private static final int CAPACITY = 4;
+
     private final UUID owner;
     private final WeakReference<World> world;
     private final ResultConsumer callback;
 
+    private BufferStream stream;
+
     private Callback(UUID owner, World world, ResultConsumer callback) {
         this.owner = owner;
         this.callback = callback;
         this.world = new WeakReference<>(world);
     }
 
+    // starts the operation that consumes the stream, buffers put into it are placed as soon as they arrive
+    public BufferStream open() {
+        if (stream == null) {
+            World world = this.world.get();
+            if (world == null) {
+                throw new IllegalStateException("Lost reference to world");
+            }
+            stream = new BufferStream(CAPACITY);
+            callback.accept(owner, world, stream);
+        }
+        return stream;
+    }
+
     @Override
     public void onSuccess(@Nullable BufferView result) {
         if (result == null) {
@@ -41,20 +57,30 @@ public class Callback implements FutureCallback<BufferView> {
             return;
         }
 
-        World world = this.world.get();
-        if (world == null) {
-            onFailure(new IllegalStateException("Lost reference to world"));
-            return;
+        try {
+            BufferStream stream = open();
+            stream.put(result);
+            stream.complete();
+        } catch (Throwable t) {
+            onFailure(t);
         }
-
-        callback.accept(owner, world, result);
     }
 
     @Override
     public void onFailure(Throwable t) {
+        // if the operation has already started it will report the error itself
+        boolean started = stream != null;
+        if (started) {
+            stream.fail(t);
+        }
+
         CopyPasta.getInstance().submitSync(() -> {
             t.printStackTrace();
 
+            if (started) {
+                return;
+            }
+
             Sponge.getServer().getPlayer(owner).ifPresent(player -> {
                 PlayerManager.getInstance().get(player).ifPresent(data -> data.setOperating(false));
                 fmt.error("An error occurred during operation, see console for details").tell(player);
@@ -63,12 +89,11 @@ public class Callback implements FutureCallback<BufferView> {
     }
 
     public static Callback of(Player player, History history, Filter fromFilter, Filter toFilter, Translate transform) {
-        return new Callback(player.getUniqueId(), player.getWorld(), (owner, world, result) -> {
-            Calculate calculate = new Calculate(world, result, fromFilter, toFilter, transform);
-            Test test = new Test(owner, world, result);
-            Apply apply = new Apply(world, result, history);
-            PlaceOperation place = new PlaceOperation(owner, calculate, test, apply);
-            CopyPasta.getInstance().getOperationManager().queueOperation(place);
+        return new Callback(player.getUniqueId(), player.getWorld(), (owner, world, stream) -> {
+            PlaceOperation place = new PlaceOperation(owner, world, history, stream, fromFilter, toFilter, transform);
+            if (!CopyPasta.getInstance().getOperationManager().queueOperation(place)) {
+                stream.cancel();
+            }
         });
     }
 }
@@ -1,7 +1,7 @@
 package me.dags.copy.operation.callback;
 
 import java.util.UUID;
-import me.dags.copy.block.volume.BufferView;
+import me.dags.copy.block.volume.BufferStream;
 import org.spongepowered.api.world.World;
 
 /**
@@ -9,5 +9,5 @@ import org.spongepowered.api.world.World;
  */
 public interface ResultConsumer {
 
-    void accept(UUID owner, World world, BufferView result);
+    void accept(UUID owner, World world, BufferStream stream);
 }
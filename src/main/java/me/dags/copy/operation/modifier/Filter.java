@@ -1,8 +1,8 @@
 package me.dags.copy.operation.modifier;
 
 import java.util.function.Predicate;
+import me.dags.copy.block.StateIndex;
 import org.spongepowered.api.block.BlockState;
-import org.spongepowered.api.block.BlockTypes;
 
 /**
  * @author dags <dags@dags.me>
@@ -11,9 +11,9 @@ public interface Filter extends Predicate<BlockState> {
 
     Filter ANY = s -> true;
 
-    Filter AIR = s -> s.getType() == BlockTypes.AIR;
+    Filter AIR = s -> StateIndex.getInstance().is(s, StateIndex.AIR);
 
-    Filter NO_AIR = s -> s.getType() != BlockTypes.AIR;
+    Filter NO_AIR = s -> !StateIndex.getInstance().is(s, StateIndex.AIR);
 
     static Filter pasteAir(boolean paste) {
         return paste ? ANY : NO_AIR;
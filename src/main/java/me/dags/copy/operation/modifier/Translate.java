@@ -1,27 +1,26 @@
 package me.dags.copy.operation.modifier;
 
 import com.flowpowered.math.vector.Vector3i;
-import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import me.dags.copy.block.BlockUtils;
-import me.dags.copy.block.Snapshot;
 import org.spongepowered.api.world.World;
 
 /**
  * @author dags <dags@dags.me>
  */
-public interface Translate extends BiConsumer<World, Snapshot> {
+public interface Translate extends BiFunction<World, Vector3i, Vector3i> {
 
-    Translate NONE = (w, s) -> {};
+    Translate NONE = (w, p) -> p;
 
     static Translate overlay(Vector3i position, Vector3i offset) {
-        return (w, s) -> {
-            Vector3i surface = BlockUtils.findSolidFoundation(w, s.getPosition());
+        return (w, p) -> {
+            Vector3i surface = BlockUtils.findSolidFoundation(w, p);
 
-            int x = s.getPosition().getX() + offset.getX();
-            int y = surface.getY() + (s.getPosition().getY() - position.getY()) + offset.getY();
-            int z = s.getPosition().getZ() + offset.getZ();
+            int x = p.getX() + offset.getX();
+            int y = surface.getY() + (p.getY() - position.getY()) + offset.getY();
+            int z = p.getZ() + offset.getZ();
 
-            s.setPosition(new Vector3i(x, y, z));
+            return new Vector3i(x, y, z);
         };
     }
 
@@ -31,16 +30,16 @@ public interface Translate extends BiConsumer<World, Snapshot> {
             private int surfaceY = -1;
 
             @Override
-            public void accept(World world, Snapshot snapshot) {
+            public Vector3i apply(World world, Vector3i pos) {
                 if (surfaceY == -1) {
                     surfaceY = BlockUtils.findSurfaceY(world, position);
                 }
 
-                int x = snapshot.getPosition().getX() + offset.getX();
-                int y = surfaceY + (snapshot.getPosition().getY() - position.getY()) + offset.getY();
-                int z = snapshot.getPosition().getZ() + offset.getZ();
+                int x = pos.getX() + offset.getX();
+                int y = surfaceY + (pos.getY() - position.getY()) + offset.getY();
+                int z = pos.getZ() + offset.getZ();
 
-                snapshot.setPosition(new Vector3i(x, y, z));
+                return new Vector3i(x, y, z);
             }
         };
     }
@@ -1,12 +1,9 @@
 package me.dags.copy.operation.phase;
 
-import java.util.Iterator;
-import java.util.List;
-import me.dags.copy.block.Snapshot;
 import me.dags.copy.block.volume.BufferView;
-import me.dags.copy.brush.History;
+import me.dags.copy.brush.HistoryRecord;
+import me.dags.copy.operation.Limit;
 import me.dags.copy.operation.Operation;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.world.World;
 
 /**
@@ -16,32 +13,28 @@ public class Apply {
 
     private final World world;
     private final BufferView view;
-    private final History history;
+    private final HistoryRecord record;
 
-    private List<BlockSnapshot> records;
-    private Iterator<Snapshot> iterator;
+    private int index = 0;
 
-    public Apply(World world, BufferView view, History history) {
+    public Apply(World world, BufferView view, HistoryRecord record) {
         this.world = world;
         this.view = view;
-        this.history = history;
+        this.record = record;
     }
 
-    public Operation.Phase apply(int limit) {
-        if (records == null || iterator == null) {
-            records = history.nextRecord();
-            iterator = view.iterator();
-        }
-
-        while (iterator.hasNext() && limit-- > 0) {
-            Snapshot snapshot = iterator.next();
-            if (snapshot.isValid()) {
-                records.add(snapshot.getFrom(world));
-                snapshot.restore(world);
+    public Operation.Phase apply(Limit limit) {
+        // finish whole chunks where possible so each tick touches as few chunks as it can
+        int end = view.getChunkEnd(index, limit.getRemaining());
+        while (index < end && limit.take()) {
+            int i = index++;
+            if (view.isValid(i)) {
+                record.add(world, view.getX(i), view.getY(i), view.getZ(i));
+                view.restore(world, i);
             }
         }
 
-        if (iterator.hasNext()) {
+        if (index < view.size()) {
             return Operation.Phase.APPLY;
         }
 
@@ -1,8 +1,9 @@
 package me.dags.copy.operation.phase;
 
-import java.util.Iterator;
-import me.dags.copy.block.Snapshot;
+import com.flowpowered.math.vector.Vector3i;
 import me.dags.copy.block.volume.BufferView;
+import me.dags.copy.block.volume.ChunkOrder;
+import me.dags.copy.operation.Limit;
 import me.dags.copy.operation.Operation;
 import me.dags.copy.operation.modifier.Filter;
 import me.dags.copy.operation.modifier.Translate;
@@ -20,7 +21,8 @@ public class Calculate {
     private final Filter fromFilter;
     private final Translate transform;
 
-    private Iterator<Snapshot> iterator;
+    private ChunkOrder order;
+    private int index = 0;
 
     public Calculate(World world, BufferView view, Filter fromFilter, Filter toFilter, Translate transform) {
         this.view = view;
@@ -30,30 +32,43 @@ public class Calculate {
         this.transform = transform;
     }
 
-    public Operation.Phase calculate(int limit) {
-        if (iterator == null) {
-            iterator = view.iterator();
+    public Operation.Phase calculate(Limit limit) {
+        if (order == null) {
+            order = new ChunkOrder();
         }
 
-        while (iterator.hasNext() && limit-- > 0) {
-            Snapshot to = iterator.next();
-            if (!toFilter.test(to.getState())) {
-                to.setValid(false);
+        while (index < view.size() && limit.take()) {
+            int i = index++;
+            if (!toFilter.test(view.getState(i))) {
                 continue;
             }
 
-            transform.accept(world, to);
-            BlockState from = world.getBlock(to.getPosition());
+            if (transform != Translate.NONE) {
+                Vector3i position = transform.apply(world, view.getPosition(i));
+                view.setPosition(i, position.getX(), position.getY(), position.getZ());
+                if (!view.isValid(i)) {
+                    continue;
+                }
+            }
+
+            int x = view.getX(i), y = view.getY(i), z = view.getZ(i);
+            BlockState from = world.getBlock(x, y, z);
 
             if (!fromFilter.test(from)) {
-                to.setValid(false);
+                continue;
             }
+
+            order.add(i, x, y, z);
         }
 
-        if (iterator.hasNext()) {
+        if (index < view.size()) {
             return Operation.Phase.CALCULATE;
         }
 
+        // only the valid blocks go through to the test & apply phases, grouped by chunk
+        view.setOrder(order);
+        order = null;
+
         return Operation.Phase.TEST;
     }
 }
@@ -1,13 +1,10 @@
 package me.dags.copy.operation.phase;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import me.dags.copy.block.Snapshot;
 import me.dags.copy.block.volume.BufferView;
 import me.dags.copy.event.PlaceEvent;
+import me.dags.copy.operation.Limit;
 import me.dags.copy.operation.Operation;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
@@ -24,7 +21,7 @@ public class Test {
     private final BufferView view;
 
     private Cause cause;
-    private Iterator<Snapshot> iterator;
+    private int index = 0;
 
     public Test(UUID owner, World world, BufferView view) {
         this.owner = owner;
@@ -32,7 +29,7 @@ public class Test {
         this.view = view;
     }
 
-    public Operation.Phase test(int limit) {
+    public Operation.Phase test(Limit limit) {
         if (cause == null) {
             Optional<Player> player = Sponge.getServer().getPlayer(owner);
             if (!player.isPresent()) {
@@ -44,23 +41,21 @@ public class Test {
                     .build();
         }
 
-        if (iterator == null) {
-            iterator = view.iterator();
+        int start = index;
+        while (index < view.size() && limit.take()) {
+            index++;
         }
 
-        List<Snapshot> snapshots = new ArrayList<>(limit);
-        while (iterator.hasNext() && limit-- > 0) {
-            snapshots.add(iterator.next());
-        }
-
-        PlaceEvent event = new PlaceEvent(cause, world, snapshots);
+        PlaceEvent event = new PlaceEvent(cause, world, view, start, index);
         boolean cancelled = Sponge.getEventManager().post(event);
 
         if (cancelled) {
             return Operation.Phase.CANCELLED;
         }
 
-        if (iterator.hasNext()) {
+        event.commit();
+
+        if (index < view.size()) {
             return Operation.Phase.TEST;
         }
 
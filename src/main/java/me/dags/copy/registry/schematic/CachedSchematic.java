@@ -3,6 +3,7 @@ package me.dags.copy.registry.schematic;
 import com.flowpowered.math.vector.Vector3i;
 import me.dags.copy.block.property.Facing;
 import me.dags.copy.brush.clipboard.Clipboard;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
 import org.spongepowered.api.world.schematic.Schematic;
 
 /**
@@ -17,6 +18,19 @@ public class CachedSchematic extends Clipboard {
         super(volume.getImmutableBlockCopy(), origin, horizontal, vertical);
     }
 
+    private CachedSchematic(ImmutableBlockVolume volume, Vector3i origin, Facing horizontal, Facing vertical) {
+        super(volume, origin, horizontal, vertical);
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    public static CachedSchematic of(ImmutableBlockVolume volume, Vector3i origin, Facing horizontal, Facing vertical) {
+        return new CachedSchematic(volume, origin, horizontal, vertical);
+    }
+
     public static CachedSchematic of(Schematic volume, Vector3i origin, Facing horizontal, Facing vertical) {
         return new CachedSchematic(volume, origin, horizontal, vertical);
     }
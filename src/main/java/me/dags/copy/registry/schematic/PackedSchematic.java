@@ -0,0 +1,248 @@
+package me.dags.copy.registry.schematic;
+
+import com.flowpowered.math.vector.Vector3i;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import me.dags.copy.block.property.Facing;
+import me.dags.copy.block.volume.PackedVolume;
+import me.dags.copy.brush.clipboard.Clipboard;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+
+/**
+ * The plugin's own schematic format, which is read straight into a PackedVolume without going through an NBT tree.
+ *
+ * Layout: a header (magic, version, volume min & size, origin, facings), a palette of block state ids shared by the
+ * whole file, then each 16x16x16 section: a flag byte, its stored & raw lengths, and its data (the section's palette
+ * as indices into the file palette, bits per index & the packed longs). Section data is deflated when that makes it
+ * smaller. Only block states are stored; tile entities & entities are not used by clipboards so aren't kept.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class PackedSchematic {
+
+    public static final String EXTENSION = "cpschem";
+
+    private static final int MAGIC = 0x43505343;
+    private static final int VERSION = 1;
+    private static final int DEFLATED = 1;
+
+    public static boolean isPacked(Path path) {
+        return path.getFileName().toString().endsWith("." + EXTENSION);
+    }
+
+    public static void write(Path path, Clipboard clipboard) throws IOException {
+        PackedVolume volume = clipboard.getSource() instanceof PackedVolume
+                ? (PackedVolume) clipboard.getSource()
+                : PackedVolume.of(clipboard.getSource());
+
+        List<BlockState> palette = new ArrayList<>();
+        Map<BlockState, Integer> ids = new HashMap<>();
+        for (int i = 0; i < volume.getSectionCount(); i++) {
+            for (BlockState state : volume.getSection(i).getPalette()) {
+                if (!ids.containsKey(state)) {
+                    ids.put(state, palette.size());
+                    palette.add(state);
+                }
+            }
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVector(out, volume.getBlockMin());
+            writeVector(out, volume.getBlockSize());
+            writeVector(out, clipboard.getOrigin());
+            out.writeUTF(clipboard.getHorizontalFacing().name());
+            out.writeUTF(clipboard.getVerticalFacing().name());
+
+            out.writeInt(palette.size());
+            for (BlockState state : palette) {
+                out.writeUTF(state.getId());
+            }
+
+            out.writeInt(volume.getSectionCount());
+            Deflater deflater = new Deflater();
+            for (int i = 0; i < volume.getSectionCount(); i++) {
+                byte[] raw = encode(volume.getSection(i), ids);
+                byte[] deflated = deflate(deflater, raw);
+                boolean compress = deflated.length < raw.length;
+                out.writeByte(compress ? DEFLATED : 0);
+                out.writeInt(compress ? deflated.length : raw.length);
+                out.writeInt(raw.length);
+                out.write(compress ? deflated : raw);
+            }
+            deflater.end();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static CachedSchematic read(Path path) throws IOException {
+        return read(path, id -> Sponge.getRegistry().getType(BlockState.class, id).orElse(BlockTypes.AIR.getDefaultState()));
+    }
+
+    // states are looked up by id through the given function, ie the registry
+    public static CachedSchematic read(Path path, Function<String, BlockState> states) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a packed schematic: " + path);
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported packed schematic version: " + path);
+            }
+
+            Vector3i min = readVector(buffer);
+            Vector3i size = readVector(buffer);
+            Vector3i origin = readVector(buffer);
+            Facing horizontal = readFacing(buffer);
+            Facing vertical = readFacing(buffer);
+
+            BlockState[] palette = new BlockState[buffer.getInt()];
+            for (int i = 0; i < palette.length; i++) {
+                String id = readUTF(buffer);
+                palette[i] = states.apply(id);
+            }
+
+            int count = buffer.getInt();
+            if (count != PackedVolume.getSectionCount(size)) {
+                throw new IOException("Section count does not match the volume size: " + path);
+            }
+
+            // find where each section starts, then decode them in parallel
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = buffer.position();
+                buffer.position(buffer.position() + 1);
+                int stored = buffer.getInt();
+                buffer.position(buffer.position() + 4 + stored);
+            }
+
+            PackedVolume.Section[] sections = new PackedVolume.Section[count];
+            IntStream.range(0, count).parallel().forEach(i -> {
+                ByteBuffer section = buffer.duplicate();
+                section.position(offsets[i]);
+                sections[i] = decode(section, palette);
+            });
+
+            return CachedSchematic.of(new PackedVolume(min, size, sections), origin, horizontal, vertical);
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read packed schematic: " + path, e);
+        }
+    }
+
+    private static byte[] encode(PackedVolume.Section section, Map<BlockState, Integer> ids) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(section.getPalette().length);
+        for (BlockState state : section.getPalette()) {
+            out.writeInt(ids.get(state));
+        }
+        out.writeByte(section.getBits());
+        for (long l : section.getData()) {
+            out.writeLong(l);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PackedVolume.Section decode(ByteBuffer buffer, BlockState[] palette) {
+        int flags = buffer.get();
+        int stored = buffer.getInt();
+        int length = buffer.getInt();
+
+        ByteBuffer data;
+        if ((flags & DEFLATED) != 0) {
+            byte[] in = new byte[stored];
+            byte[] out = new byte[length];
+            buffer.get(in);
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(in);
+                if (inflater.inflate(out) != length) {
+                    throw new IllegalStateException("Truncated section");
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inflater.end();
+            }
+            data = ByteBuffer.wrap(out);
+        } else {
+            data = buffer.slice();
+            data.limit(length);
+        }
+
+        BlockState[] states = new BlockState[data.getShort() & 0xFFFF];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = palette[data.getInt()];
+        }
+
+        int bits = data.get();
+        long[] longs = new long[bits == 0 ? 0 : PackedVolume.Section.getDataLength(bits)];
+        data.asLongBuffer().get(longs);
+        return new PackedVolume.Section(states, bits, longs);
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVector(DataOutputStream out, Vector3i vector) throws IOException {
+        out.writeInt(vector.getX());
+        out.writeInt(vector.getY());
+        out.writeInt(vector.getZ());
+    }
+
+    private static Vector3i readVector(ByteBuffer buffer) {
+        return new Vector3i(buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    private static Facing readFacing(ByteBuffer buffer) {
+        String name = readUTF(buffer);
+        try {
+            return Facing.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return Facing.none;
+        }
+    }
+
+    // reads a string written by DataOutput#writeUTF (ids & facing names are plain ascii)
+    private static String readUTF(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
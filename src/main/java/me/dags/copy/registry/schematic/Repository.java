@@ -2,21 +2,26 @@ package me.dags.copy.registry.schematic;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import me.dags.copy.CopyPasta;
+import me.dags.copy.brush.clipboard.Clipboard;
 import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.persistence.DataFormats;
 import org.spongepowered.api.data.persistence.DataTranslator;
@@ -25,19 +30,28 @@ import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.world.schematic.Schematic;
 
 /**
+ * Keeps an index of the schematic files under the repository's root, keyed by their lower-cased id (the relative
+ * path without its extension). Packed schematics are indexed alongside the repository's NBT format, and are preferred
+ * when both exist for the same id. New schematics are saved as NBT unless the repository has been set to save packed.
+ * The index is kept up to date by a WatchService on a background thread, and is rebuilt from a full walk of the
+ * tree periodically (and whenever the watcher misses events) in case anything slipped through.
+ *
  * @author dags <dags@dags.me>
  */
 public class Repository {
 
-    private static final Object lock = new Object();
-
     private final Path root;
     private final String name;
     private final String extension;
     private final PathMatcher matcher;
+    private final PathMatcher packed;
     private final DataTranslator<Schematic> format;
+    private final Map<String, Path> index = new ConcurrentHashMap<>();
+    // the next counter to try for each dir/name pair when naming a new schematic
+    private final Map<String, Integer> counters = new HashMap<>();
 
-    private volatile List<Path> tree = Collections.emptyList();
+    private volatile boolean savePacked = false;
+    private WatchService watcher;
 
     public Repository(Path root, String name, String extension, DataTranslator<Schematic> format) {
         this.name = name;
@@ -45,8 +59,9 @@ public class Repository {
         this.extension = extension;
         this.format = format;
         this.matcher = FileSystems.getDefault().getPathMatcher("glob:*." + extension);
-        scan();
-        Task.builder().execute(this::scan).interval(15, TimeUnit.MINUTES).submit(CopyPasta.getInstance());
+        this.packed = FileSystems.getDefault().getPathMatcher("glob:*." + PackedSchematic.EXTENSION);
+        reconcile();
+        Task.builder().execute(this::reconcile).async().interval(15, TimeUnit.MINUTES).submit(CopyPasta.getInstance());
     }
 
     public DataTranslator<Schematic> getFormat() {
@@ -71,9 +86,17 @@ public class Repository {
         return name;
     }
 
+    public boolean isSavePacked() {
+        return savePacked;
+    }
+
+    public void setSavePacked(boolean savePacked) {
+        this.savePacked = savePacked;
+    }
+
     public Supplier<Optional<Path>> save(Schematic schematic, String dir, String name) {
         return () -> {
-            Path path = root.resolve(getNext(dir, name));
+            Path path = root.resolve(getNext(dir, name, extension));
             try {
                 Files.createDirectories(path.getParent());
 
@@ -82,65 +105,222 @@ public class Repository {
                     DataFormats.NBT.writeTo(outputStream, container);
                 }
 
+                add(path);
+                return Optional.of(getRelative(path));
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        };
+    }
+
+    // saves in the packed format, which only keeps block states (no tile entities, entities or metadata)
+    public Supplier<Optional<Path>> savePacked(Clipboard clipboard, String dir, String name) {
+        return () -> {
+            Path path = root.resolve(getNext(dir, name, PackedSchematic.EXTENSION));
+            try {
+                Files.createDirectories(path.getParent());
+                PackedSchematic.write(path, clipboard);
+                add(path);
                 return Optional.of(getRelative(path));
             } catch (IOException e) {
+                e.printStackTrace();
                 return Optional.empty();
             }
         };
     }
 
+    // writes a packed copy of each NBT schematic in the repository that doesn't already have one, returning the
+    // number converted
+    public Supplier<Integer> convert() {
+        return () -> {
+            int count = 0;
+            for (Path relative : index.values()) {
+                if (packed.matches(relative.getFileName())) {
+                    continue;
+                }
+
+                Path source = root.resolve(relative);
+                Path target = source.resolveSibling(getId(relative.getFileName()) + "." + PackedSchematic.EXTENSION);
+                try {
+                    CachedSchematic schematic = SchematicRegistry.getInstance().load(SchematicEntry.of(this, relative));
+                    PackedSchematic.write(target, schematic);
+                    add(target);
+                    count++;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            return count;
+        };
+    }
+
     public Stream<String> getOptions() {
-        return getTree().stream().map(Path::toString).map(s -> s.substring(0, s.length() - (extension.length() + 1)));
+        return index.values().stream().map(this::getId);
     }
 
     public Optional<SchematicEntry> getById(String id) {
-        String file = id + "." + extension;
-        return getTree().stream()
-                .filter(p -> p.toString().equalsIgnoreCase(file))
-                .map(p -> SchematicEntry.of(this, p))
-                .findFirst();
+        Path path = index.get(getKey(id));
+        return Optional.ofNullable(path).map(p -> SchematicEntry.of(this, p));
     }
 
-    private Path getNext(String dir, String name) {
-        Set<Path> paths = new HashSet<>(getTree());
-
+    private Path getNext(String dir, String name, String extension) {
         Path base = Paths.get(dir);
-        Path path;
+        String key = getKey(base.resolve(name).toString());
+
+        synchronized (counters) {
+            int counter = counters.getOrDefault(key, 0);
+
+            String id;
+            while (index.containsKey(getKey(id = base.resolve(String.format("%s-%03d", name, counter)).toString()))) {
+                counter++;
+            }
 
-        int counter = 0;
-        while (paths.contains(path = base.resolve(String.format("%s-%03d.%s", name, counter, extension)))) {
-            counter++;
+            // reserve the name so that a second save can't pick it before this one has been written
+            counters.put(key, counter + 1);
+            return Paths.get(id + "." + extension);
         }
+    }
+
+    // the relative path without its file extension
+    private String getId(Path relative) {
+        String path = relative.toString();
+        int dot = path.lastIndexOf('.');
+        return dot > 0 ? path.substring(0, dot) : path;
+    }
+
+    private String getKey(Path relative) {
+        return getKey(getId(relative));
+    }
 
-        return path;
+    private static String getKey(String id) {
+        return id.toLowerCase(Locale.ROOT);
     }
 
-    private List<Path> getTree() {
-        List<Path> tree;
-        synchronized (lock) {
-            tree = this.tree;
+    private boolean matches(Path path) {
+        return matcher.matches(path.getFileName()) || packed.matches(path.getFileName());
+    }
+
+    private void add(Path path) {
+        if (matches(path)) {
+            Path relative = root.relativize(path);
+            index.merge(getKey(relative), relative, this::prefer);
         }
-        return tree;
     }
 
-    private void setTree(List<Path> tree) {
-        synchronized (lock) {
-            this.tree = tree;
+    private void remove(Path path) {
+        Path relative = root.relativize(path);
+        if (!matches(path)) {
+            // might have been a directory
+            index.values().removeIf(p -> p.startsWith(relative));
+            return;
         }
+
+        String key = getKey(relative);
+        if (index.remove(key, relative)) {
+            // fall back to the other format if there's a file in it for the same id
+            String id = getId(relative.getFileName());
+            for (String extension : new String[]{this.extension, PackedSchematic.EXTENSION}) {
+                Path other = path.resolveSibling(id + "." + extension);
+                if (Files.exists(other)) {
+                    add(other);
+                }
+            }
+        }
+    }
+
+    private Path prefer(Path a, Path b) {
+        return packed.matches(a.getFileName()) ? a : b;
     }
 
-    private void scan() {
+    // rebuilds the index from a full walk of the tree & makes sure the watcher is running
+    private synchronized void reconcile() {
         if (!Files.exists(root)) {
+            index.clear();
             return;
         }
 
+        if (watcher == null) {
+            startWatcher();
+        }
+
+        try (Stream<Path> stream = Files.walk(root)) {
+            Map<String, Path> found = new HashMap<>();
+            stream.filter(this::matches).map(root::relativize).forEach(p -> found.merge(getKey(p), p, this::prefer));
+            index.keySet().retainAll(found.keySet());
+            index.putAll(found);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void startWatcher() {
         try {
-            List<Path> list = Files.walk(root)
-                    .filter(p -> matcher.matches(p.getFileName()))
-                    .map(root::relativize)
-                    .collect(Collectors.toList());
-            setTree(list);
+            watcher = root.getFileSystem().newWatchService();
+            register(root);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        Thread thread = new Thread(this::watch, "copypasta-repository-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void register(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) stream.filter(Files::isDirectory)::iterator) {
+                path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path dir = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reconcile();
+                        continue;
+                    }
+
+                    Path path = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        remove(path);
+                    } else if (Files.isDirectory(path)) {
+                        added(path);
+                    } else {
+                        add(path);
+                    }
+                }
+
+                if (!key.reset() && dir.equals(root)) {
+                    // the root itself has gone, the next reconcile will restart the watcher if it comes back
+                    synchronized (this) {
+                        watcher.close();
+                        watcher = null;
+                    }
+                    index.clear();
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void added(Path dir) {
+        // files may have been written into the new directory before it was registered
+        try (Stream<Path> stream = Files.walk(dir)) {
+            register(dir);
+            stream.forEach(this::add);
         } catch (IOException e) {
+            // picked up by the next reconcile instead
             e.printStackTrace();
         }
     }
@@ -3,6 +3,7 @@ package me.dags.copy.registry.schematic;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.spongepowered.api.data.persistence.DataTranslator;
 import org.spongepowered.api.world.schematic.Schematic;
 
@@ -58,7 +59,7 @@ public class SchematicEntry {
 
     }
 
-    public Optional<CachedSchematic> getSchematic() {
+    public CompletableFuture<CachedSchematic> getSchematic() {
         return SchematicRegistry.getInstance().getSchematic(this);
     }
 
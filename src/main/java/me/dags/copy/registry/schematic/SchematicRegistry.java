@@ -1,18 +1,29 @@
 package me.dags.copy.registry.schematic;
 
 import com.flowpowered.math.vector.Vector3i;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.management.NotificationEmitter;
+import me.dags.config.Node;
 import me.dags.copy.CopyPasta;
 import me.dags.copy.block.property.Facing;
 import org.spongepowered.api.Sponge;
@@ -34,17 +45,102 @@ public class SchematicRegistry implements CacheLoader<SchematicEntry, CachedSche
     private static final DataQuery ORIGIN = DataQuery.of("offset");
     private static final DataQuery FACEINGH = DataQuery.of(CachedSchematic.FACING_H);
     private static final DataQuery FACEINGV = DataQuery.of(CachedSchematic.FACING_V);
+    private static final int DEFAULT_MAX_BLOCKS = 16_000_000;
 
     private final Repository defaultRepo;
     private final Map<String, Repository> repositories = new HashMap<>();
-    private final LoadingCache<SchematicEntry, CachedSchematic> cache = Caffeine.newBuilder()
+    private final AtomicLong pressureEvictions = new AtomicLong();
+    // schematics are read & decoded on the common pool, never on the main thread
+    // bounded by the total number of blocks held across all loaded schematics
+    private final AsyncLoadingCache<SchematicEntry, CachedSchematic> cache = Caffeine.newBuilder()
+            .maximumWeight(DEFAULT_MAX_BLOCKS)
+            .weigher(SchematicRegistry::weigh)
             .expireAfterAccess(5, TimeUnit.MINUTES)
-            .build(this);
+            .recordStats()
+            .buildAsync(this);
+
+    private volatile long maxBlocks = DEFAULT_MAX_BLOCKS;
 
     private SchematicRegistry() {
         Path config = Sponge.getGame().getGameDirectory().resolve("config");
         defaultRepo = repo(config, CopyPasta.ID, "schematics", "schematic", DataTranslators.SCHEMATIC);
         repo(config, "worldedit", "schematics", "schematic", DataTranslators.LEGACY_SCHEMATIC);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        if (memory instanceof NotificationEmitter) {
+            ((NotificationEmitter) memory).addNotificationListener((notification, handback) -> {
+                String type = notification.getType();
+                if (type.equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+                    trim();
+                }
+            }, null, null);
+        }
+    }
+
+    public void configure(Node node) {
+        // new schematics are saved as nbt (keeping tile entities, entities & metadata) unless a repo opts in
+        Node packed = node.node("save_packed");
+        for (Repository repository : repositories.values()) {
+            repository.setSavePacked(packed.get(repository.getName(), false));
+        }
+
+        maxBlocks = Math.max(1L, node.get("cache_max_blocks", DEFAULT_MAX_BLOCKS));
+        getEviction().ifPresent(eviction -> eviction.setMaximum(maxBlocks));
+
+        // notify when a heap pool is still above this fraction of its max straight after a gc
+        int percent = Math.max(1, Math.min(100, node.get("cache_trim_heap_percent", 85)));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage() != null ? pool.getUsage().getMax() : -1L;
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold(max * percent / 100);
+            }
+        }
+    }
+
+    // evicts the least recently used schematics until the cache is down to a quarter of its ceiling
+    public void trim() {
+        getEviction().ifPresent(eviction -> {
+            long target = maxBlocks / 4;
+            long blocks = getBlocks();
+            if (blocks <= target) {
+                return;
+            }
+
+            for (Map.Entry<SchematicEntry, CachedSchematic> entry : eviction.coldest(Integer.MAX_VALUE).entrySet()) {
+                if (blocks <= target) {
+                    break;
+                }
+                cache.synchronous().invalidate(entry.getKey());
+                blocks -= weigh(entry.getKey(), entry.getValue());
+            }
+
+            pressureEvictions.incrementAndGet();
+        });
+    }
+
+    public long getBlocks() {
+        return getEviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public long getMaxBlocks() {
+        return maxBlocks;
+    }
+
+    public long getSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats getStats() {
+        return cache.synchronous().stats();
+    }
+
+    // number of times the cache has been trimmed because the heap was running low
+    public long getPressureEvictions() {
+        return pressureEvictions.get();
+    }
+
+    private Optional<Policy.Eviction<SchematicEntry, CachedSchematic>> getEviction() {
+        return cache.synchronous().policy().eviction();
     }
 
     private Repository repo(Path sharedConfig, String name, String path, String extension, DataTranslator<Schematic> format) {
@@ -58,8 +154,9 @@ public class SchematicRegistry implements CacheLoader<SchematicEntry, CachedSche
         return defaultRepo;
     }
 
-    public Optional<CachedSchematic> getSchematic(SchematicEntry entry) {
-        return Optional.ofNullable(cache.get(entry));
+    // starts loading the schematic if it isn't already loaded/loading
+    public CompletableFuture<CachedSchematic> getSchematic(SchematicEntry entry) {
+        return cache.get(entry);
     }
 
     public Optional<Repository> getRepository(String name) {
@@ -72,6 +169,10 @@ public class SchematicRegistry implements CacheLoader<SchematicEntry, CachedSche
 
     @Override
     public CachedSchematic load(@Nonnull SchematicEntry entry) throws Exception {
+        if (PackedSchematic.isPacked(entry.getPath())) {
+            return PackedSchematic.read(entry.getPath());
+        }
+
         try (InputStream inputStream = Files.newInputStream(entry.getPath())) {
             DataContainer container = DataFormats.NBT.readFrom(inputStream);
             Vector3i origin = container.getView(ORIGIN).map(DataTranslators.VECTOR_3_I::translate).orElse(Vector3i.ZERO);
@@ -85,6 +186,11 @@ public class SchematicRegistry implements CacheLoader<SchematicEntry, CachedSche
         }
     }
 
+    private static int weigh(SchematicEntry entry, CachedSchematic schematic) {
+        Vector3i size = schematic.getSource().getBlockSize();
+        return (int) Math.min(Integer.MAX_VALUE, (long) size.getX() * size.getY() * size.getZ());
+    }
+
     public static SchematicRegistry getInstance() {
         return instance;
     }
@@ -0,0 +1,38 @@
+package me.dags.copy.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream over a ByteBuffer, ie to read a memory-mapped file through the usual stream wrappers.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class BufferInput extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public BufferInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, len);
+        return len;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -27,6 +27,17 @@ public class Utils {
         return new Input(new String(chars));
     }
 
+    // a human readable size, ie 12.3MB
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + "B";
+        }
+        if (bytes < 1024L * 1024L) {
+            return String.format("%.1fKB", bytes / 1024D);
+        }
+        return String.format("%.1fMB", bytes / (1024D * 1024D));
+    }
+
     public static Path getDir(Path parent, String... child) {
         Path p = parent;
         for (String c : child) {
@@ -0,0 +1,128 @@
+import com.flowpowered.math.vector.Vector3i;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import me.dags.copy.TestStates;
+import me.dags.copy.block.property.Facing;
+import me.dags.copy.block.volume.PackedVolume;
+import me.dags.copy.registry.schematic.CachedSchematic;
+import me.dags.copy.registry.schematic.PackedSchematic;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+
+/**
+ * Writes a volume as a packed schematic and reads it back (through the memory-mapped read), checking every block.
+ * The volume isn't a multiple of 16 on any axis and mixes sections that get stored raw (single state, too small
+ * for deflating to help) with ones that get deflated (patterned). A truncated file must fail to read.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class PackedSchematicTest {
+
+    private static final Vector3i MIN = new Vector3i(-5, 3, 7);
+    private static final Vector3i SIZE = new Vector3i(37, 20, 18);
+
+    public static void main(String[] args) throws Exception {
+        TestStates states = new TestStates();
+        BlockState air = states.get("minecraft:air");
+        BlockState[] pattern = new BlockState[4];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = states.get("minecraft:wool[color=" + i + "]");
+        }
+        BlockState[] noise = new BlockState[200];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = states.get("minecraft:noise[value=" + i + "]");
+        }
+
+        Random random = new Random(1234L);
+        BlockState[] blocks = new BlockState[SIZE.getX() * SIZE.getY() * SIZE.getZ()];
+        for (int y = 0; y < SIZE.getY(); y++) {
+            for (int z = 0; z < SIZE.getZ(); z++) {
+                for (int x = 0; x < SIZE.getX(); x++) {
+                    BlockState state;
+                    if (x >= 32) {
+                        state = air;
+                    } else if (y < 16) {
+                        state = pattern[(x + y + z) & 3];
+                    } else {
+                        state = noise[random.nextInt(noise.length)];
+                    }
+                    blocks[index(x, y, z)] = state;
+                }
+            }
+        }
+
+        PackedVolume volume = new PackedVolume(MIN, SIZE, pack(blocks));
+        CachedSchematic schematic = CachedSchematic.of(volume, new Vector3i(3, -2, 1), Facing.east, Facing.up);
+
+        Path dir = Files.createTempDirectory("schematics");
+        Path file = dir.resolve("test." + PackedSchematic.EXTENSION);
+        try {
+            PackedSchematic.write(file, schematic);
+            CachedSchematic read = PackedSchematic.read(file, id -> states.find(id).orElseThrow(() -> new IllegalStateException("Unknown state " + id)));
+
+            ImmutableBlockVolume source = read.getSource();
+            check(source.getBlockMin().equals(MIN), "min " + source.getBlockMin());
+            check(source.getBlockSize().equals(SIZE), "size " + source.getBlockSize());
+            check(read.getOrigin().equals(schematic.getOrigin()), "origin " + read.getOrigin());
+            check(read.getHorizontalFacing() == Facing.east, "horizontal facing " + read.getHorizontalFacing());
+            check(read.getVerticalFacing() == Facing.up, "vertical facing " + read.getVerticalFacing());
+
+            for (int y = 0; y < SIZE.getY(); y++) {
+                for (int z = 0; z < SIZE.getZ(); z++) {
+                    for (int x = 0; x < SIZE.getX(); x++) {
+                        BlockState state = source.getBlock(MIN.getX() + x, MIN.getY() + y, MIN.getZ() + z);
+                        check(state == blocks[index(x, y, z)], "block at " + x + "," + y + "," + z + " is " + state);
+                    }
+                }
+            }
+            System.out.println("round trip: ok (" + Files.size(file) + " bytes)");
+
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 100));
+            try {
+                PackedSchematic.read(file, id -> states.find(id).orElse(air));
+                throw new IllegalStateException("truncated file was read");
+            } catch (IOException e) {
+                System.out.println("truncated: ok (" + e.getMessage() + ")");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // sections in the same order as PackedVolume, each in section index order
+    private static PackedVolume.Section[] pack(BlockState[] blocks) {
+        int sectionsX = PackedVolume.getSections(SIZE.getX());
+        int sectionsZ = PackedVolume.getSections(SIZE.getZ());
+        PackedVolume.Section[] sections = new PackedVolume.Section[PackedVolume.getSectionCount(SIZE)];
+        for (int i = 0; i < sections.length; i++) {
+            int offX = (i % sectionsX) * PackedVolume.SECTION_SIZE;
+            int offZ = ((i / sectionsX) % sectionsZ) * PackedVolume.SECTION_SIZE;
+            int offY = (i / (sectionsX * sectionsZ)) * PackedVolume.SECTION_SIZE;
+            BlockState[] section = new BlockState[PackedVolume.SECTION_VOLUME];
+            for (int y = offY; y < Math.min(SIZE.getY(), offY + PackedVolume.SECTION_SIZE); y++) {
+                for (int z = offZ; z < Math.min(SIZE.getZ(), offZ + PackedVolume.SECTION_SIZE); z++) {
+                    for (int x = offX; x < Math.min(SIZE.getX(), offX + PackedVolume.SECTION_SIZE); x++) {
+                        section[PackedVolume.getIndex(x, y, z)] = blocks[index(x, y, z)];
+                    }
+                }
+            }
+            sections[i] = PackedVolume.Section.pack(section);
+        }
+        return sections;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * SIZE.getZ() + z) * SIZE.getX() + x;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import com.flowpowered.math.vector.Vector3i;
+import java.util.UUID;
+import me.dags.copy.TestStates;
+import me.dags.copy.block.volume.BufferBuilder;
+import me.dags.copy.block.volume.BufferView;
+import org.spongepowered.api.block.BlockState;
+
+/**
+ * Checks that positions at the edges of the packed range (x/z offsets -2048 to 2047, y 0 to 255) come back out of a
+ * buffer unchanged, that offsets past them are rejected, and that y values outside the world are dropped.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class PackingTest {
+
+    private static final Vector3i POSITION = new Vector3i(1000, 64, -1000);
+    private static final int[] EDGES = {-2048, -2047, -1, 0, 1, 2046, 2047};
+    private static final int[] HEIGHTS = {0, 1, 127, 128, 254, 255};
+
+    public static void main(String[] args) {
+        TestStates states = new TestStates();
+        BlockState stone = states.get("minecraft:stone");
+        BlockState dirt = states.get("minecraft:dirt");
+
+        BufferBuilder builder = new BufferBuilder(UUID.randomUUID(), POSITION, 16);
+        int count = 0;
+        for (int dx : EDGES) {
+            for (int dz : EDGES) {
+                for (int y : HEIGHTS) {
+                    check(builder.contains(POSITION.getX() + dx, POSITION.getZ() + dz), "contains " + dx + "," + dz);
+                    builder.addAbsolute((count & 1) == 0 ? stone : dirt, POSITION.getX() + dx, y, POSITION.getZ() + dz);
+                    count++;
+                }
+            }
+        }
+
+        BufferView view = builder.getView();
+        check(view.size() == count, "size " + view.size());
+        int i = 0;
+        for (int dx : EDGES) {
+            for (int dz : EDGES) {
+                for (int y : HEIGHTS) {
+                    String at = dx + "," + y + "," + dz;
+                    check(view.getX(i) == POSITION.getX() + dx, "x at " + at + " is " + view.getX(i));
+                    check(view.getY(i) == y, "y at " + at + " is " + view.getY(i));
+                    check(view.getZ(i) == POSITION.getZ() + dz, "z at " + at + " is " + view.getZ(i));
+                    check(view.getState(i) == ((i & 1) == 0 ? stone : dirt), "state at " + at);
+                    i++;
+                }
+            }
+        }
+        System.out.println("edges: ok (" + count + " positions)");
+
+        for (int d : new int[]{-2049, 2048, 4096}) {
+            check(!builder.contains(POSITION.getX() + d, POSITION.getZ()), "contains x " + d);
+            check(!builder.contains(POSITION.getX(), POSITION.getZ() + d), "contains z " + d);
+            expectRejected(builder, stone, d, 0);
+            expectRejected(builder, stone, 0, d);
+        }
+        System.out.println("out of range x/z: ok");
+
+        int size = builder.size();
+        builder.addAbsolute(stone, POSITION.getX(), -1, POSITION.getZ());
+        builder.addAbsolute(stone, POSITION.getX(), 256, POSITION.getZ());
+        check(builder.size() == size, "y outside 0-255 was added");
+        System.out.println("out of range y: ok");
+    }
+
+    private static void expectRejected(BufferBuilder builder, BlockState state, int dx, int dz) {
+        try {
+            builder.addAbsolute(state, POSITION.getX() + dx, 64, POSITION.getZ() + dz);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new IllegalStateException("offset " + dx + "," + dz + " was added");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import me.dags.copy.block.volume.Transform;
+
+/**
+ * Compares the per-block cost of rotating/flipping positions with trig (the old VolumeMapper path) against the
+ * integer Transform, over a large clipboard-sized volume.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class RotationBenchmark {
+
+    private static final int SIZE_XZ = 256;
+    private static final int SIZE_Y = 64;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) {
+        long blocks = (long) SIZE_XZ * SIZE_Y * SIZE_XZ;
+
+        for (int angle = 0; angle < 360; angle += 90) {
+            Transform transform = Transform.of(angle, true, true, false);
+            double radians = Math.toRadians(angle);
+
+            if (trig(radians, 0) != integer(transform, 0)) {
+                throw new IllegalStateException("Transforms disagree at angle " + angle);
+            }
+
+            for (int i = 0; i < WARMUP; i++) {
+                trig(radians, i);
+                integer(transform, i);
+            }
+
+            long trig = 0L;
+            long integer = 0L;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                trig(radians, i);
+                trig += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                integer(transform, i);
+                integer += System.nanoTime() - start;
+            }
+
+            double trigPerBlock = (double) trig / (RUNS * blocks);
+            double integerPerBlock = (double) integer / (RUNS * blocks);
+            System.out.printf("angle=%3d trig=%.2fns/block integer=%.2fns/block (%.1fx)%n",
+                    angle, trigPerBlock, integerPerBlock, trigPerBlock / integerPerBlock);
+        }
+    }
+
+    // same sequence of operations as VolumeMapper.visit used before the integer transform
+    private static long trig(double radians, int offset) {
+        long hash = 0L;
+        for (int y = 0; y < SIZE_Y; y++) {
+            for (int z = 0; z < SIZE_XZ; z++) {
+                for (int x = 0; x < SIZE_XZ; x++) {
+                    int ry = offset - y;
+                    int fx = -x;
+                    int fz = z;
+                    int rx = fx;
+                    int rz = fz;
+                    if (radians != 0) {
+                        rx = rotateY(fx, fz, radians, -1);
+                        rz = rotateY(fz, fx, radians, 1);
+                    }
+                    hash = hash * 31 + rx + ry + rz;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long integer(Transform transform, int offset) {
+        long hash = 0L;
+        for (int y = 0; y < SIZE_Y; y++) {
+            for (int z = 0; z < SIZE_XZ; z++) {
+                for (int x = 0; x < SIZE_XZ; x++) {
+                    int rx = transform.getX(x, z);
+                    int ry = transform.getY(y, offset);
+                    int rz = transform.getZ(x, z);
+                    hash = hash * 31 + rx + ry + rz;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int rotateY(int a, int b, double rads, int sign) {
+        return (int) Math.round(a * Math.cos(rads) + (sign * b) * Math.sin(rads));
+    }
+}
@@ -0,0 +1,78 @@
+package me.dags.copy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+
+/**
+ * Stand-in BlockStates (and BlockTypes) for running tests without a server. Only the id, type & identity are real,
+ * anything else returns an empty value.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class TestStates {
+
+    private final Map<String, BlockType> types = new HashMap<>();
+    private final Map<String, BlockState> states = new HashMap<>();
+
+    // the same instance is returned for the same id, like the registry. the type is the id up to any properties
+    public BlockState get(String id) {
+        return states.computeIfAbsent(id, i -> {
+            int properties = i.indexOf('[');
+            BlockType type = type(properties == -1 ? i : i.substring(0, properties));
+            return proxy(BlockState.class, i, type);
+        });
+    }
+
+    public Optional<BlockState> find(String id) {
+        return Optional.ofNullable(states.get(id));
+    }
+
+    private BlockType type(String id) {
+        return types.computeIfAbsent(id, i -> proxy(BlockType.class, i, null));
+    }
+
+    private static <T> T proxy(Class<T> type, String id, BlockType blockType) {
+        Object proxy = Proxy.newProxyInstance(TestStates.class.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                case "getName":
+                case "toString":
+                    return id;
+                case "getType":
+                    return blockType;
+                case "equals":
+                    return self == args[0];
+                case "hashCode":
+                    return System.identityHashCode(self);
+                default:
+                    return empty(method);
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    private static Object empty(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == Optional.class) {
+            return Optional.empty();
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        return null;
+    }
+}
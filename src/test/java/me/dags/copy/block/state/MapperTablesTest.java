@@ -0,0 +1,76 @@
+package me.dags.copy.block.state;
+
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import me.dags.copy.TestStates;
+import me.dags.copy.block.StateIndex;
+import org.spongepowered.api.block.BlockState;
+
+/**
+ * Round trips mapper tables through MapperTables#save & #load, and checks that a file written against a different
+ * set of states, or cut short, loads as empty rather than as the wrong mappings.
+ *
+ * @author dags <dags@dags.me>
+ */
+public class MapperTablesTest {
+
+    public static void main(String[] args) throws Exception {
+        TestStates states = new TestStates();
+        BlockState north = states.get("minecraft:stairs[facing=north]");
+        BlockState east = states.get("minecraft:stairs[facing=east]");
+        BlockState south = states.get("minecraft:stairs[facing=south]");
+        BlockState west = states.get("minecraft:stairs[facing=west]");
+        BlockState log = states.get("minecraft:log[axis=x]");
+        BlockState log2 = states.get("minecraft:log[axis=z]");
+        StateIndex index = StateIndex.of(Arrays.asList(north, east, south, west, log, log2));
+
+        Map<String, State.Mapper> mappers = new LinkedHashMap<>();
+        mappers.put("rotate_90", StateMapper.of("*", "*", ImmutableMap.of(north, east, east, south, south, west, west, north)));
+        mappers.put("flip_x", StateMapper.of("*", "*", ImmutableMap.of(east, west, west, east)));
+        mappers.put("axis", StateMapper.of("minecraft:log", "minecraft:log", ImmutableMap.of(log, log2, log2, log)));
+
+        Path dir = Files.createTempDirectory("mappers");
+        Path file = dir.resolve("mappers.bin");
+        try {
+            MapperTables.save(file, index, mappers);
+            Map<String, State.Mapper> loaded = MapperTables.load(file, index);
+            check(loaded.keySet().equals(mappers.keySet()), "loaded names " + loaded.keySet());
+            for (Map.Entry<String, State.Mapper> entry : mappers.entrySet()) {
+                StateMapper expected = (StateMapper) entry.getValue();
+                StateMapper actual = (StateMapper) loaded.get(entry.getKey());
+                check(expected.getMatch().equals(actual.getMatch()), entry.getKey() + " match");
+                check(expected.getReplace().equals(actual.getReplace()), entry.getKey() + " replace");
+                check(expected.getMappings().equals(actual.getMappings()), entry.getKey() + " mappings " + actual);
+            }
+            System.out.println("round trip: ok");
+
+            // one more registered state changes the hash, so the ordinals in the file no longer line up
+            StateIndex changed = StateIndex.of(Arrays.asList(north, east, south, west, log, log2, states.get("minecraft:air")));
+            check(changed.getHash() != index.getHash(), "hash should change with the registry");
+            check(MapperTables.load(file, changed).isEmpty(), "file loaded against a different registry");
+            System.out.println("hash mismatch: ok");
+
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+            check(MapperTables.load(file, index).isEmpty(), "truncated file loaded");
+            System.out.println("truncated: ok");
+
+            Files.delete(file);
+            check(MapperTables.load(file, index).isEmpty(), "missing file loaded");
+            System.out.println("missing: ok");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}